@@ -0,0 +1,255 @@
+package com.qax.situation.asset.application.service.impl.excel.fetch;
+
+import com.qax.dayu.asset.sdk.model.PageResult;
+import com.qax.situation.asset.application.service.impl.excel.executor.ExportTaskExecutor;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+
+/**
+ * @description: 资产SDK分页拉取器，遍历全部分页，并发拉取且限制同时在途的请求数
+ * 第1页同步拉取以获得总数，其余分页提交到拉取执行器，通过信号量实现背压。并发分两级限制：
+ * 每次遍历（单个导出的一路数据）最多 fetch.concurrency 个在途分页；
+ * 本节点所有导出合计最多 fetch.node-concurrency 个在途的资产SDK请求，超出时在拉取线程上排队等待，
+ * 用于保护资产SDK，与执行器使用平台线程还是虚拟线程无关
+ */
+@Slf4j
+@Component
+public class AssetPageFetcher {
+
+    /**
+     * 分页查询，页码从1开始
+     */
+    @FunctionalInterface
+    public interface PageQuery<T> {
+        ResponseEntity<PageResult<T>> fetch(int pageNo, int pageSize);
+    }
+
+    /**
+     * 分页数据消费者，forEachPage按完成顺序、forEachPageInOrder按页码顺序回调，同一时刻只有一个线程回调
+     */
+    @FunctionalInterface
+    public interface PageConsumer<T> {
+        void accept(int pageNo, List<T> items) throws Exception;
+    }
+
+    @Value("${key-asset.export.fetch.page-size:500}")
+    private int pageSize;
+
+    /**
+     * 单次遍历的在途分页上限，每个导出的每一路数据各自计算
+     */
+    @Value("${key-asset.export.fetch.concurrency:4}")
+    private int concurrency;
+
+    /**
+     * 本节点所有导出合计的在途资产SDK请求上限
+     */
+    @Value("${key-asset.export.fetch.node-concurrency:16}")
+    private int nodeConcurrency;
+
+    @Resource
+    private ExportTaskExecutor exportTaskExecutor;
+
+    @Resource
+    private ExportMetrics exportMetrics;
+
+    private ExecutorService fetchExecutor;
+
+    /**
+     * 节点级并发许可，每个资产SDK请求执行期间持有一个
+     */
+    private Semaphore nodePermits;
+
+    @PostConstruct
+    public void init() {
+        int nodeLimit = Math.max(1, nodeConcurrency);
+        nodePermits = new Semaphore(nodeLimit, true);
+        // 平台线程池与节点上限等大，线程不会空等许可；虚拟线程每页一个，由节点许可限制在途请求
+        fetchExecutor = exportTaskExecutor.newFetchExecutor("asset-page-fetch-", nodeLimit);
+        log.info("资产分页拉取，单次遍历并发数：{}，节点并发上限：{}", getConcurrency(), nodeLimit);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        fetchExecutor.shutdownNow();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getConcurrency() {
+        return Math.max(1, concurrency);
+    }
+
+    /**
+     * 只拉取一条数据以获得总数，用于预估导出规模
+     * @param name 数据名称，用于日志
+     * @param query 分页查询
+     * @return 数据总条数
+     */
+    public <T> long count(String name, PageQuery<T> query) {
+        ResponseEntity<PageResult<T>> response;
+        acquireNodePermit(name);
+        try {
+            response = query.fetch(1, 1);
+        } finally {
+            nodePermits.release();
+        }
+        PageResult<T> page = response == null ? null : response.getBody();
+        if (page == null) {
+            throw new IllegalStateException("查询" + name + "总数失败，响应为空");
+        }
+        return page.getTotal();
+    }
+
+    /**
+     * 拉取全部分页并按页码顺序合并
+     * @param name 数据名称，用于日志
+     * @param query 分页查询
+     * @return 全部数据
+     */
+    public <T> List<T> fetchAll(String name, PageQuery<T> query) {
+        ConcurrentSkipListMap<Integer, List<T>> pages = new ConcurrentSkipListMap<>();
+        forEachPage(name, query, pages::put);
+        List<T> all = new ArrayList<>();
+        pages.values().forEach(all::addAll);
+        return all;
+    }
+
+    /**
+     * 拉取全部分页，每页到达后立即交给消费者处理
+     * @param name 数据名称，用于日志
+     * @param query 分页查询
+     * @param consumer 分页消费者
+     * @return 数据总条数
+     */
+    public <T> long forEachPage(String name, PageQuery<T> query, PageConsumer<T> consumer) {
+        return forEachPage(name, query, consumer, false);
+    }
+
+    /**
+     * 拉取全部分页，按页码顺序交给消费者处理；先到达的后续分页暂存，等待前面的分页，
+     * 暂存的分页同样占用并发许可，最多暂存并发数个分页
+     * @param name 数据名称，用于日志
+     * @param query 分页查询
+     * @param consumer 分页消费者
+     * @return 数据总条数
+     */
+    public <T> long forEachPageInOrder(String name, PageQuery<T> query, PageConsumer<T> consumer) {
+        return forEachPage(name, query, consumer, true);
+    }
+
+    private <T> long forEachPage(String name, PageQuery<T> query, PageConsumer<T> consumer, boolean ordered) {
+        long startTime = System.nanoTime();
+        PageResult<T> firstPage = fetchPage(name, query, 1);
+        long total = firstPage.getTotal();
+        int pageCount = (int) Math.max(1, (total + pageSize - 1) / pageSize);
+        deliver(name, consumer, 1, firstPage);
+
+        if (pageCount > 1) {
+            Semaphore permits = new Semaphore(Math.max(1, concurrency));
+            CompletionService<PageResult<T>> completionService = new ExecutorCompletionService<>(fetchExecutor);
+            List<Future<PageResult<T>>> futures = new ArrayList<>(pageCount - 1);
+            ConcurrentHashMap<Future<PageResult<T>>, Integer> pageNoByFuture = new ConcurrentHashMap<>();
+            TreeMap<Integer, PageResult<T>> pending = new TreeMap<>();
+            int nextDelivery = 2;
+            try {
+                int nextPage = 2;
+                int completed = 0;
+                while (completed < pageCount - 1) {
+                    // 背压：在途请求达到并发上限时先消费已完成的分页
+                    while (nextPage <= pageCount && permits.tryAcquire()) {
+                        int pageNo = nextPage++;
+                        Future<PageResult<T>> future = completionService.submit(() -> fetchPage(name, query, pageNo));
+                        futures.add(future);
+                        pageNoByFuture.put(future, pageNo);
+                    }
+                    Future<PageResult<T>> done = completionService.take();
+                    completed++;
+                    if (!ordered) {
+                        permits.release();
+                        deliver(name, consumer, pageNoByFuture.remove(done), done.get());
+                        continue;
+                    }
+                    pending.put(pageNoByFuture.remove(done), done.get());
+                    while (!pending.isEmpty() && pending.firstKey() == nextDelivery) {
+                        permits.release();
+                        deliver(name, consumer, nextDelivery, pending.pollFirstEntry().getValue());
+                        nextDelivery++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("拉取" + name + "被中断", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("拉取" + name + "失败：" + e.getCause().getMessage(), e.getCause());
+            } finally {
+                futures.forEach(f -> f.cancel(true));
+            }
+        }
+
+        log.info("{}拉取完成，共{}条，{}页，并发数：{}，耗时：{}ms",
+                name, total, pageCount, concurrency, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return total;
+    }
+
+    private <T> PageResult<T> fetchPage(String name, PageQuery<T> query, int pageNo) {
+        acquireNodePermit(name);
+        long startTime = System.nanoTime();
+        PageResult<T> page = null;
+        try {
+            ResponseEntity<PageResult<T>> response = query.fetch(pageNo, pageSize);
+            page = response == null ? null : response.getBody();
+        } finally {
+            nodePermits.release();
+            // 单页耗时计入Micrometer，不含等待节点许可的时间，异常与空响应按失败统计
+            exportMetrics.recordPageFetch(name, System.nanoTime() - startTime, page != null);
+        }
+        if (page == null) {
+            throw new IllegalStateException("拉取" + name + "第" + pageNo + "页失败，响应为空");
+        }
+        log.debug("{}第{}页拉取完成，{}条，耗时：{}ms", name, pageNo, sizeOf(page),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return page;
+    }
+
+    /**
+     * 获取节点级并发许可，等待期间被中断（任务取消）时放弃拉取
+     */
+    private void acquireNodePermit(String name) {
+        try {
+            nodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待拉取" + name + "被中断", e);
+        }
+    }
+
+    private <T> void deliver(String name, PageConsumer<T> consumer, int pageNo, PageResult<T> page) {
+        List<T> items = page.getItems() == null ? Collections.emptyList() : page.getItems();
+        try {
+            consumer.accept(pageNo, items);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("处理" + name + "第" + pageNo + "页失败：" + e.getMessage(), e);
+        }
+    }
+
+    private static int sizeOf(PageResult<?> page) {
+        return page.getItems() == null ? 0 : page.getItems().size();
+    }
+}
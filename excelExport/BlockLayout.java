@@ -0,0 +1,217 @@
+package com.qax.situation.asset.application.service.impl.excel.builder;
+
+import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder.Column;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * @description: 声明式块布局，描述一个多行区块中每个单元格的位置、跨度及内容（固定标签或取值方式），
+ * 构建时编译为定长数组模板：
+ * <pre>
+ * 行模板     固定标签预先填好，其余位置为空串，生成行时只复制数组并填入取值单元格
+ * 常量行     不含取值单元格的行编译为共享的不可变行，生成时不再分配
+ * 合并区域   由同一份定义推导，覆盖两个及以上单元格的位置即为一个合并区域
+ * </pre>
+ * 行内容与合并区域出自同一份定义，不会互相错位
+ */
+public final class BlockLayout<T> {
+
+    private static final Object EMPTY = "";
+
+    private final int columnCount;
+    private final Object[][] templates;
+    private final List<Object>[] constantRows;
+    private final int[][] slotColumns;
+    private final Function<T, Object>[][] slotExtractors;
+    private final List<MergeSpan> mergeSpans;
+    private final List<Column<T>> valueColumns;
+
+    @SuppressWarnings("unchecked")
+    private BlockLayout(int columnCount, List<List<Cell<T>>> rows) {
+        int rowCount = rows.size();
+        this.columnCount = columnCount;
+        this.templates = new Object[rowCount][];
+        this.constantRows = new List[rowCount];
+        this.slotColumns = new int[rowCount][];
+        this.slotExtractors = new Function[rowCount][];
+        List<MergeSpan> spans = new ArrayList<>();
+        List<Column<T>> columns = new ArrayList<>();
+        BitSet[] occupied = new BitSet[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            occupied[r] = new BitSet(columnCount);
+        }
+
+        for (int r = 0; r < rowCount; r++) {
+            Object[] template = new Object[columnCount];
+            Arrays.fill(template, EMPTY);
+            List<Cell<T>> cells = rows.get(r);
+            List<Cell<T>> slots = new ArrayList<>();
+            for (Cell<T> cell : cells) {
+                int lastRow = r + cell.rowSpan - 1;
+                if (cell.firstCol < 0 || cell.lastCol >= columnCount || cell.firstCol > cell.lastCol
+                        || cell.rowSpan < 1 || lastRow >= rowCount) {
+                    throw new IllegalStateException("布局单元格越界：第" + r + "行，列" + cell.firstCol + "-" + cell.lastCol);
+                }
+                for (int row = r; row <= lastRow; row++) {
+                    int next = occupied[row].nextSetBit(cell.firstCol);
+                    if (next >= 0 && next <= cell.lastCol) {
+                        throw new IllegalStateException("布局单元格重叠：第" + row + "行，列" + next);
+                    }
+                    occupied[row].set(cell.firstCol, cell.lastCol + 1);
+                }
+                if (cell.rowSpan > 1 || cell.lastCol > cell.firstCol) {
+                    spans.add(new MergeSpan(r, lastRow, cell.firstCol, cell.lastCol));
+                }
+                if (cell.extractor == null) {
+                    template[cell.firstCol] = cell.text;
+                } else {
+                    slots.add(cell);
+                    columns.add(new Column<>(cell.text, cell.extractor));
+                }
+            }
+
+            templates[r] = template;
+            slotColumns[r] = new int[slots.size()];
+            slotExtractors[r] = new Function[slots.size()];
+            for (int i = 0; i < slots.size(); i++) {
+                slotColumns[r][i] = slots.get(i).firstCol;
+                slotExtractors[r][i] = slots.get(i).extractor;
+            }
+            if (slots.isEmpty()) {
+                constantRows[r] = Collections.unmodifiableList(Arrays.asList(template));
+            }
+        }
+        this.mergeSpans = Collections.unmodifiableList(spans);
+        this.valueColumns = Collections.unmodifiableList(columns);
+    }
+
+    public static <T> Builder<T> builder(int columnCount) {
+        return new Builder<>(columnCount);
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getRowCount() {
+        return templates.length;
+    }
+
+    /**
+     * 生成块内第rowOffset行，常量行直接返回共享的不可变行
+     */
+    public List<Object> renderRow(int rowOffset, T source) {
+        List<Object> constantRow = constantRows[rowOffset];
+        if (constantRow != null) {
+            return constantRow;
+        }
+        Object[] cells = templates[rowOffset].clone();
+        int[] columns = slotColumns[rowOffset];
+        Function<T, Object>[] extractors = slotExtractors[rowOffset];
+        for (int i = 0; i < columns.length; i++) {
+            cells[columns[i]] = extractors[i].apply(source);
+        }
+        return Arrays.asList(cells);
+    }
+
+    /**
+     * 块内合并区域，行号为相对块首行的偏移
+     */
+    public List<MergeSpan> getMergeSpans() {
+        return mergeSpans;
+    }
+
+    /**
+     * 取值单元格按声明顺序展开的列定义，用于扁平化导出
+     */
+    public List<Column<T>> getValueColumns() {
+        return valueColumns;
+    }
+
+    /**
+     * 合并区域，行号为相对块首行的偏移
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class MergeSpan {
+        private final int firstRowOffset;
+        private final int lastRowOffset;
+        private final int firstColumn;
+        private final int lastColumn;
+    }
+
+    @AllArgsConstructor
+    private static class Cell<T> {
+        private final int firstCol;
+        private final int lastCol;
+        private final int rowSpan;
+        private final String text; // 标签文本，取值单元格为扁平化导出时的列名
+        private final Function<T, Object> extractor; // 为null时为固定标签
+    }
+
+    public static class Builder<T> {
+
+        private final int columnCount;
+        private final List<List<Cell<T>>> rows = new ArrayList<>();
+
+        private Builder(int columnCount) {
+            this.columnCount = columnCount;
+        }
+
+        /**
+         * 开始新的一行
+         */
+        public Builder<T> row() {
+            rows.add(new ArrayList<>());
+            return this;
+        }
+
+        /**
+         * 固定标签，占据firstCol到lastCol列
+         */
+        public Builder<T> label(int firstCol, int lastCol, String text) {
+            return label(firstCol, lastCol, 1, text);
+        }
+
+        /**
+         * 固定标签，占据firstCol到lastCol列，并向下跨rowSpan行
+         */
+        public Builder<T> label(int firstCol, int lastCol, int rowSpan, String text) {
+            return cell(new Cell<>(firstCol, lastCol, rowSpan, text, null));
+        }
+
+        /**
+         * 取值单元格，占据firstCol到lastCol列
+         * @param header 扁平化导出时的列名
+         */
+        public Builder<T> value(int firstCol, int lastCol, String header, Function<T, Object> extractor) {
+            return value(firstCol, lastCol, 1, header, extractor);
+        }
+
+        /**
+         * 取值单元格，占据firstCol到lastCol列，并向下跨rowSpan行
+         * @param header 扁平化导出时的列名
+         */
+        public Builder<T> value(int firstCol, int lastCol, int rowSpan, String header, Function<T, Object> extractor) {
+            return cell(new Cell<>(firstCol, lastCol, rowSpan, header, Objects.requireNonNull(extractor)));
+        }
+
+        private Builder<T> cell(Cell<T> cell) {
+            if (rows.isEmpty()) {
+                throw new IllegalStateException("添加单元格前需先调用row()");
+            }
+            rows.get(rows.size() - 1).add(cell);
+            return this;
+        }
+
+        /**
+         * 编译布局，单元格越界或重叠时抛出IllegalStateException
+         */
+        public BlockLayout<T> build() {
+            return new BlockLayout<>(columnCount, rows);
+        }
+    }
+}
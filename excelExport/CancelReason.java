@@ -0,0 +1,17 @@
+package com.qax.situation.asset.application.service.impl.excel.cancel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @description: 导出终止原因，state为导出记录对应的状态值
+ */
+@Getter
+@AllArgsConstructor
+public enum CancelReason {
+    CANCELLED(4, "导出已取消"),
+    TIMED_OUT(5, "导出超时");
+
+    private final int state;
+    private final String message;
+}
@@ -0,0 +1,108 @@
+package com.qax.situation.asset.application.service.impl.excel.upload;
+
+import com.qax.situation.asset.application.service.impl.excel.cancel.ExportCancellationToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @description: 分片流式上传，从磁盘按固定大小分片读取并上传，只占用一个分片大小的缓冲区；
+ * 同一次上传内分片失败时向服务端查询已确认的分片，从断点继续而不是重新上传。
+ * 上传ID不做持久化，不支持跨调用续传：任务恢复时导出文件会重新生成，内容与中断前的文件不同，只能重新上传。
+ * 仅在注册了 {@link ChunkedUploadClient} 实现时使用，本模块只有测试用的进程内桩
+ */
+@Slf4j
+public class ChunkedFileUploader {
+
+    private final ChunkedUploadClient client;
+    private final int chunkSize;
+    private final int maxRetries;
+
+    public ChunkedFileUploader(ChunkedUploadClient client, int chunkSize, int maxRetries) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("分片大小必须大于0");
+        }
+        this.client = client;
+        this.chunkSize = chunkSize;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * 上传文件
+     * @param file 本地文件
+     * @param bucket 存储桶
+     * @return 文件ID
+     */
+    public String upload(Path file, String bucket) throws IOException {
+        return upload(file, bucket, new ExportCancellationToken());
+    }
+
+    /**
+     * 上传文件，每个分片上传前检查任务是否已取消
+     * @param file 本地文件
+     * @param bucket 存储桶
+     * @param cancellationToken 取消标记
+     * @return 文件ID
+     */
+    public String upload(Path file, String bucket, ExportCancellationToken cancellationToken) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+            String uploadId = client.initUpload(file.getFileName().toString(), fileSize, chunkSize, bucket);
+            log.info("开始分片上传，文件：{}，大小：{} 字节，分片数：{}，上传ID：{}", file, fileSize, totalChunks, uploadId);
+
+            byte[] buffer = new byte[chunkSize];
+            int chunkIndex = 0;
+            int failures = 0;
+            while (chunkIndex < totalChunks) {
+                cancellationToken.throwIfCancelled();
+                try {
+                    int length = readChunk(channel, chunkIndex, buffer);
+                    client.uploadChunk(uploadId, chunkIndex, buffer, length);
+                    chunkIndex++;
+                    failures = 0;
+                } catch (RuntimeException e) {
+                    if (++failures > maxRetries) {
+                        throw new IOException("分片上传失败，分片：" + chunkIndex + "，上传ID：" + uploadId, e);
+                    }
+                    // 以服务端确认的进度为准，从最后确认的分片之后续传；查询失败时重传当前分片，同样计入重试次数
+                    chunkIndex = acknowledgedChunks(uploadId, chunkIndex);
+                    log.warn("分片上传中断，第{}次重试，从分片{}续传，上传ID：{}", failures, chunkIndex, uploadId, e);
+                }
+            }
+
+            String fileId = client.completeUpload(uploadId);
+            log.info("分片上传完成，上传ID：{}，文件ID：{}", uploadId, fileId);
+            return fileId;
+        }
+    }
+
+    /**
+     * 查询服务端已确认的分片数作为续传位置：当前分片已确认（响应丢失）时跳过，不会越过当前分片之后；
+     * 查询失败时返回当前分片
+     */
+    private int acknowledgedChunks(String uploadId, int chunkIndex) {
+        try {
+            return Math.max(0, Math.min(client.acknowledgedChunks(uploadId), chunkIndex + 1));
+        } catch (RuntimeException e) {
+            log.warn("查询已确认分片失败，重传分片{}，上传ID：{}", chunkIndex, uploadId, e);
+            return chunkIndex;
+        }
+    }
+
+    private int readChunk(FileChannel channel, int chunkIndex, byte[] buffer) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long position = (long) chunkIndex * chunkSize;
+        while (byteBuffer.hasRemaining()) {
+            int read = channel.read(byteBuffer, position + byteBuffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        return byteBuffer.position();
+    }
+}
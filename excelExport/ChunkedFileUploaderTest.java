@@ -0,0 +1,91 @@
+package com.qax.situation.asset.application.service.impl.excel.upload;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @description: 分片流式上传测试，通过进程内的Hakkero分片上传桩注入故障，验证失败后从已确认的分片续传
+ */
+class ChunkedFileUploaderTest {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final String BUCKET = "test";
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 最后一个分片不满
+        content = new byte[CHUNK_SIZE * 5 + 100];
+        new Random(42L).nextBytes(content);
+        file = Files.write(tempDir.resolve("export.xlsx"), content);
+    }
+
+    @Test
+    void uploadsAllChunks() throws IOException {
+        StubChunkedUploadClient client = new StubChunkedUploadClient();
+
+        String fileId = new ChunkedFileUploader(client, CHUNK_SIZE, 3).upload(file, BUCKET);
+
+        assertArrayEquals(content, client.getFile(fileId));
+        for (int chunk = 0; chunk < 6; chunk++) {
+            assertEquals(1, client.getUploadCount(chunk));
+        }
+    }
+
+    @Test
+    void resumesFromFailedChunk() throws IOException {
+        StubChunkedUploadClient client = new StubChunkedUploadClient().failBeforeStore(2);
+
+        String fileId = new ChunkedFileUploader(client, CHUNK_SIZE, 3).upload(file, BUCKET);
+
+        assertArrayEquals(content, client.getFile(fileId));
+        // 已确认的分片不重传，失败的分片重传一次
+        assertEquals(1, client.getUploadCount(0));
+        assertEquals(1, client.getUploadCount(1));
+        assertEquals(2, client.getUploadCount(2));
+        assertEquals(1, client.getUploadCount(3));
+    }
+
+    @Test
+    void skipsChunkAcknowledgedBeforeResponseWasLost() throws IOException {
+        StubChunkedUploadClient client = new StubChunkedUploadClient().failAfterStore(3);
+
+        String fileId = new ChunkedFileUploader(client, CHUNK_SIZE, 3).upload(file, BUCKET);
+
+        assertArrayEquals(content, client.getFile(fileId));
+        assertEquals(1, client.getUploadCount(3));
+        assertEquals(1, client.getUploadCount(4));
+    }
+
+    @Test
+    void retriesCurrentChunkWhenAcknowledgedLookupFails() throws IOException {
+        StubChunkedUploadClient client = new StubChunkedUploadClient().failBeforeStore(1).failAcknowledgedLookups(1);
+
+        String fileId = new ChunkedFileUploader(client, CHUNK_SIZE, 3).upload(file, BUCKET);
+
+        assertArrayEquals(content, client.getFile(fileId));
+        assertEquals(2, client.getUploadCount(1));
+    }
+
+    @Test
+    void failsAfterMaxRetries() {
+        StubChunkedUploadClient client = new StubChunkedUploadClient().failBeforeStore(1);
+
+        IOException e = assertThrows(IOException.class, () -> new ChunkedFileUploader(client, CHUNK_SIZE, 0).upload(file, BUCKET));
+
+        assertTrue(e.getMessage().contains("分片：1"));
+    }
+}
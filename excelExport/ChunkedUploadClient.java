@@ -0,0 +1,43 @@
+package com.qax.situation.asset.application.service.impl.excel.upload;
+
+/**
+ * @description: 分片上传客户端扩展点，由 {@link ChunkedFileUploader} 调用。
+ * Hakkero文件服务目前只有整文件上传接口，本模块只提供测试用的进程内桩 {@link StubChunkedUploadClient}；
+ * 未注册该接口的Bean时导出按整文件上传，文件内容从磁盘流式读取。文件服务提供分片上传接口后，
+ * 由对接方实现并注册为Bean即启用分片流式上传
+ */
+public interface ChunkedUploadClient {
+
+    /**
+     * 初始化分片上传
+     * @param fileName 文件名
+     * @param fileSize 文件大小（字节）
+     * @param chunkSize 分片大小（字节）
+     * @param bucket 存储桶
+     * @return 上传ID
+     */
+    String initUpload(String fileName, long fileSize, int chunkSize, String bucket);
+
+    /**
+     * 查询服务端已确认的分片数，续传时从该分片开始
+     * @param uploadId 上传ID
+     * @return 已确认的连续分片数
+     */
+    int acknowledgedChunks(String uploadId);
+
+    /**
+     * 上传单个分片，返回即表示服务端已确认
+     * @param uploadId 上传ID
+     * @param chunkIndex 分片序号，从0开始
+     * @param data 分片数据缓冲区
+     * @param length 缓冲区中有效数据长度
+     */
+    void uploadChunk(String uploadId, int chunkIndex, byte[] data, int length);
+
+    /**
+     * 完成上传
+     * @param uploadId 上传ID
+     * @return 文件ID
+     */
+    String completeUpload(String uploadId);
+}
@@ -1,21 +1,34 @@
 package com.qax.situation.asset.application.service.impl.excel.util;
 
+import cn.hutool.core.util.IdUtil;
 import com.alibaba.excel.EasyExcel;
 import com.alibaba.excel.ExcelWriter;
 import com.alibaba.excel.metadata.Head;
+import com.alibaba.excel.write.builder.ExcelWriterBuilder;
 import com.alibaba.excel.write.metadata.WriteSheet;
 import com.alibaba.excel.write.style.AbstractCellStyleStrategy;
 import com.qax.needle.framework.boot.spring.MockMultipartFile;
 import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
 import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportJobMetrics;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportPhase;
 import com.qax.situation.asset.application.service.impl.excel.strategy.ComplexHeaderMergeStrategy;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * @author L-wangxinzhuo
@@ -26,6 +39,16 @@ import java.util.List;
 @Slf4j
 public class ComplexExcelExportUtil {
 
+    /**
+     * 首个sheet名称，后续sheet依次追加序号
+     */
+    private static final String SHEET_NAME = "重点保护对象清单";
+
+    /**
+     * 文件读写缓冲区大小
+     */
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
     /**
      * 导出Excel并直接返回MultipartFile
      * @param fileName 文件名（不含扩展名）
@@ -44,60 +67,311 @@ public class ComplexExcelExportUtil {
     }
 
     /**
-     * 从临时文件创建MultipartFile
+     * 从临时文件创建MultipartFile，内容在上传时从磁盘读取，不整体读入内存
      */
-    public static MultipartFile createMultipartFileFromTemp(String filePath) throws IOException {
-        File file = new File(filePath);
-        FileInputStream input = new FileInputStream(file);
+    public static MultipartFile createMultipartFileFromTemp(String filePath) {
+        Path file = Paths.get(filePath);
+        return new DiskMultipartFile("file", file, contentType(file.getFileName().toString()));
+    }
 
-        return new MockMultipartFile(
-                "file",
-                file.getName(),
-                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
-                input
-        );
+    private static String contentType(String fileName) {
+        if (fileName.endsWith(".zip")) {
+            return "application/zip";
+        }
+        if (fileName.endsWith(".gz")) {
+            return "application/gzip";
+        }
+        if (fileName.endsWith(".csv")) {
+            return "text/csv";
+        }
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
     }
 
     /**
-     * 导出复杂结构的Excel到字节数组
+     * 导出复杂结构的Excel到字节数组，整个工作簿会驻留内存，仅适用于小数据量
      * @param fileName 文件名（不含扩展名）
      * @param unitGroups 数据
      * @return 字节数组
      */
     public static byte[] exportComplexExcelToBytes(String fileName, List<UnitGroupDto> unitGroups) throws IOException {
+        return exportComplexExcelToBytes(fileName, unitGroups, ExcelExportOptions.defaults());
+    }
+
+    /**
+     * 按导出选项导出复杂结构的Excel到字节数组，整个工作簿会驻留内存，仅适用于小数据量
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 数据
+     * @param options 导出选项，可由 {@link ExportProfile#apply} 按性能档位生成
+     * @return 字节数组
+     */
+    public static byte[] exportComplexExcelToBytes(String fileName, List<UnitGroupDto> unitGroups,
+                                                   ExcelExportOptions options) throws IOException {
+        checkNotEmpty(fileName, unitGroups);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportTo(fileName, unitGroups.iterator(), outputStream, options, new ExportJobMetrics());
+        byte[] bytes = outputStream.toByteArray();
+        log.info("数据字节数组大小：{} 字节", bytes.length);
+        return bytes;
+    }
+
+    /**
+     * 导出复杂结构的Excel到指定文件，经缓冲直接写盘
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 数据
+     * @param target 目标文件路径，已存在时覆盖
+     * @return 文件大小（字节）
+     */
+    public static long exportTo(String fileName, List<UnitGroupDto> unitGroups, Path target) throws IOException {
+        checkNotEmpty(fileName, unitGroups);
+        return exportTo(fileName, unitGroups.iterator(), target);
+    }
+
+    /**
+     * 导出复杂结构的Excel到指定文件，单位组由迭代器逐个提供
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 单位组迭代器
+     * @param target 目标文件路径，已存在时覆盖
+     * @return 文件大小（字节）
+     */
+    public static long exportTo(String fileName, Iterator<UnitGroupDto> unitGroups, Path target) throws IOException {
+        return exportTo(fileName, unitGroups, target, ExcelExportOptions.defaults(), new ExportJobMetrics());
+    }
+
+    /**
+     * 导出复杂结构的Excel到指定文件，单位组由迭代器逐个提供，并记录写出、合并、样式耗时与写出量
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 单位组迭代器
+     * @param target 目标文件路径，已存在时覆盖
+     * @param options 导出选项
+     * @param metrics 任务指标
+     * @return 文件大小（字节）
+     */
+    public static long exportTo(String fileName, Iterator<UnitGroupDto> unitGroups, Path target,
+                                ExcelExportOptions options, ExportJobMetrics metrics) throws IOException {
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(target), FILE_BUFFER_SIZE)) {
+            exportTo(fileName, unitGroups, outputStream, options, metrics);
+        }
+        long size = Files.size(target);
+        metrics.addBytesWritten(size);
+        log.info("Excel已写入文件：{}，大小：{} 字节", target, size);
+        return size;
+    }
+
+    /**
+     * 导出复杂结构的Excel到调用方提供的输出流，流由调用方负责关闭
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 数据
+     * @param outputStream 输出流
+     */
+    public static void exportTo(String fileName, List<UnitGroupDto> unitGroups, OutputStream outputStream) throws IOException {
+        checkNotEmpty(fileName, unitGroups);
+        exportTo(fileName, unitGroups.iterator(), outputStream);
+    }
+
+    /**
+     * 导出复杂结构的Excel到调用方提供的输出流，单位组由迭代器逐个提供，流由调用方负责关闭
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 单位组迭代器
+     * @param outputStream 输出流
+     */
+    public static void exportTo(String fileName, Iterator<UnitGroupDto> unitGroups, OutputStream outputStream) throws IOException {
+        exportTo(fileName, unitGroups, outputStream, ExcelExportOptions.defaults(), new ExportJobMetrics());
+    }
+
+    /**
+     * 导出复杂结构的Excel到调用方提供的输出流，并记录写出耗时、合并区域数与样式缓存命中数，流由调用方负责关闭
+     * 行数超过 {@link ExcelExportOptions#getMaxRowsPerSheet()} 时在单位组边界处切换到新的sheet，
+     * 每个sheet都有自己的标题行，合并区域按sheet内的行号计算
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 单位组迭代器
+     * @param outputStream 输出流
+     * @param options 导出选项
+     * @param metrics 任务指标
+     */
+    public static void exportTo(String fileName, Iterator<UnitGroupDto> unitGroups, OutputStream outputStream,
+                                ExcelExportOptions options, ExportJobMetrics metrics) throws IOException {
         log.info("=== 开始导出Excel ===");
+
+        if (!unitGroups.hasNext()) {
+            log.error("unitGroups为空！");
+            throw new IllegalArgumentException("导出数据不能为空");
+        }
+
+        try {
+            // 使用outputStream创建ExcelWriter，不由EasyExcel关闭调用方的流
+            CustomCellStyleHandler styleHandler = new CustomCellStyleHandler();
+            ExcelWriterBuilder writerBuilder = EasyExcel.write(outputStream)
+                    .autoCloseStream(false)
+                    .registerWriteHandler(styleHandler);
+            if (SxssfTuningHandler.isNeeded(options)) {
+                writerBuilder.registerWriteHandler(new SxssfTuningHandler(options));
+            }
+            ExcelWriter excelWriter = writerBuilder.build();
+
+            // 按批次拉取数据写入，避免整表数据驻留内存；合并策略按sheet注册，行号从各sheet首行起算
+            PeekingGroupIterator groups = new PeekingGroupIterator(unitGroups);
+            int maxRowsPerSheet = Math.min(options.getMaxRowsPerSheet(), ExcelExportOptions.XLSX_MAX_ROWS);
+            int rowCount = 0;
+            int sheetCount = 0;
+            while (groups.hasNext()) {
+                ComplexHeaderMergeStrategy mergeStrategy = new ComplexHeaderMergeStrategy();
+                WriteSheet writeSheet = EasyExcel.writerSheet(sheetCount, sheetName(sheetCount))
+                        .registerWriteHandler(mergeStrategy)
+                        .build();
+                Iterator<UnitGroupDto> sheetGroups = new SheetGroupIterator(groups, maxRowsPerSheet);
+                rowCount += writeInBatches(excelWriter, writeSheet, SystemExportDataBuilder.rowIterator(sheetGroups, mergeStrategy),
+                        options.getWriteBatchSize(), new BatchCounters(mergeStrategy, styleHandler, metrics));
+                sheetCount++;
+            }
+            long finishStartNanos = System.nanoTime();
+            excelWriter.finish();
+            metrics.addPhaseNanos(ExportPhase.WRITE, System.nanoTime() - finishStartNanos);
+            log.info("文件名：{}，共写入{}行数据，{}个sheet", fileName, rowCount, sheetCount);
+
+        } catch (Exception e) {
+            log.error("导出过程中出现异常：", e);
+            throw new IOException("导出失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static String sheetName(int sheetIndex) {
+        return sheetIndex == 0 ? SHEET_NAME : SHEET_NAME + "(" + (sheetIndex + 1) + ")";
+    }
+
+    private static void checkNotEmpty(String fileName, List<UnitGroupDto> unitGroups) {
         log.info("文件名：{}, 数据组数：{}", fileName, unitGroups == null ? 0 : unitGroups.size());
 
         if (unitGroups == null || unitGroups.isEmpty()) {
             log.error("unitGroups为空！");
             throw new IllegalArgumentException("导出数据不能为空");
         }
+    }
 
-        try {
-            // 创建ByteArrayOutputStream来接收Excel数据
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    /**
+     * 从行迭代器中按批次取数写入sheet，内存中最多只保留一个批次的行数据
+     * @return 写入的总行数
+     */
+    private static int writeInBatches(ExcelWriter excelWriter, WriteSheet writeSheet,
+                                      Iterator<List<Object>> rows, int batchSize, BatchCounters counters) {
+        int rowCount = 0;
+        List<List<Object>> batch = new ArrayList<>(batchSize);
+        while (rows.hasNext()) {
+            batch.add(rows.next());
+            if (batch.size() >= batchSize) {
+                rowCount += writeBatch(excelWriter, writeSheet, batch, counters);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            rowCount += writeBatch(excelWriter, writeSheet, batch, counters);
+        }
+        return rowCount;
+    }
 
-            // 使用outputStream创建ExcelWriter
-            ExcelWriter excelWriter = EasyExcel.write(outputStream)
-                    .registerWriteHandler(new ComplexHeaderMergeStrategy(unitGroups))
-                    .registerWriteHandler(new CustomCellStyleHandler())
-                    .build();
+    /**
+     * 写入一个批次，按批次计时，写出耗时包含其中逐单元格的合并与样式处理；
+     * 合并与样式不单独计时，批次写完后累加其间新增的合并区域数与样式缓存命中、未命中数
+     */
+    private static int writeBatch(ExcelWriter excelWriter, WriteSheet writeSheet, List<List<Object>> batch,
+                                  BatchCounters counters) {
+        long startNanos = System.nanoTime();
+        excelWriter.write(batch, writeSheet);
+        ExportJobMetrics metrics = counters.metrics;
+        metrics.addPhaseNanos(ExportPhase.WRITE, System.nanoTime() - startNanos);
+        metrics.addRowsWritten(batch.size());
+        metrics.addMergedRegions(counters.mergeStrategy.drainAddedRegionCount());
+        metrics.addStyleCacheHits(counters.styleHandler.drainCacheHits());
+        metrics.addStyleCacheMisses(counters.styleHandler.drainCacheMisses());
+        return batch.size();
+    }
 
-            // 构建数据
-            List<List<Object>> testData = SystemExportDataBuilder.buildComplexData(unitGroups);
+    /**
+     * 当前sheet的合并策略、样式处理器与任务指标，每写完一个批次从前两者取出计数累加到任务指标
+     */
+    private static class BatchCounters {
 
-            WriteSheet testSheet = EasyExcel.writerSheet("重点保护对象清单").build();
-            excelWriter.write(testData, testSheet);
-            excelWriter.finish();
+        private final ComplexHeaderMergeStrategy mergeStrategy;
+        private final CustomCellStyleHandler styleHandler;
+        private final ExportJobMetrics metrics;
 
-            // 通过outputStream获取字节数组，而不是通过excelWriter
-            byte[] testBytes = outputStream.toByteArray();
-            log.info("数据字节数组大小：{} 字节", testBytes.length);
-            return testBytes;
+        BatchCounters(ComplexHeaderMergeStrategy mergeStrategy, CustomCellStyleHandler styleHandler,
+                      ExportJobMetrics metrics) {
+            this.mergeStrategy = mergeStrategy;
+            this.styleHandler = styleHandler;
+            this.metrics = metrics;
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("导出过程中出现异常：", e);
-            throw new IOException("导出失败: " + e.getMessage(), e);
+    /**
+     * 可预读下一个元素的单位组迭代器
+     */
+    private static class PeekingGroupIterator implements Iterator<UnitGroupDto> {
+
+        private final Iterator<UnitGroupDto> source;
+        private UnitGroupDto peeked;
+
+        PeekingGroupIterator(Iterator<UnitGroupDto> source) {
+            this.source = source;
+        }
+
+        UnitGroupDto peek() {
+            if (peeked == null) {
+                peeked = source.next();
+            }
+            return peeked;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peeked != null || source.hasNext();
+        }
+
+        @Override
+        public UnitGroupDto next() {
+            UnitGroupDto group = peek();
+            peeked = null;
+            return group;
+        }
+    }
+
+    /**
+     * 单个sheet内的单位组迭代器，下一个单位组放不进当前sheet时结束，单位组不会被拆到两个sheet
+     */
+    private static class SheetGroupIterator implements Iterator<UnitGroupDto> {
+
+        private final PeekingGroupIterator groups;
+        private final int maxRows;
+        private int usedRows = 1; // 标题行
+        private int groupCount = 0;
+
+        SheetGroupIterator(PeekingGroupIterator groups, int maxRows) {
+            this.groups = groups;
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!groups.hasNext()) {
+                return false;
+            }
+            // 每个sheet至少放一个单位组，即使该单位组本身超过上限
+            return groupCount == 0 || usedRows + requiredRows(groups.peek()) <= maxRows;
+        }
+
+        @Override
+        public UnitGroupDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            UnitGroupDto group = groups.next();
+            usedRows += requiredRows(group);
+            groupCount++;
+            return group;
+        }
+
+        private int requiredRows(UnitGroupDto group) {
+            // 非首个单位组前有一个空行分隔
+            return SystemExportDataBuilder.groupRowCount(group) + (groupCount == 0 ? 0 : 1);
         }
     }
 
@@ -132,77 +406,206 @@ public class ComplexExcelExportUtil {
      * @return 临时文件路径
      */
     public static String exportComplexExcelToTempFile(String fileName, List<UnitGroupDto> unitGroups) throws IOException {
-        byte[] bytes = exportComplexExcelToBytes(fileName, unitGroups);
-
-        // 校验返回的数据是否为空
-        if (bytes.length == 0) {
-            throw new IOException("Excel导出失败，返回的字节数组为空");
-        }
-
         // 创建临时文件
-        String tempFileName = fileName + ".xlsx";
-        String tempFilePath = System.getProperty("java.io.tmpdir") + File.separator + tempFileName;
+        Path tempFilePath = resolveTempFile(fileName);
+
+        long size = exportTo(fileName, unitGroups, tempFilePath);
 
-        try (FileOutputStream fos = new FileOutputStream(tempFilePath)) {
-            fos.write(bytes);
+        // 校验导出的文件是否为空
+        if (size == 0) {
+            throw new IOException("Excel导出失败，生成的文件为空");
         }
 
         log.info("Excel已保存到临时文件：{}", tempFilePath);
-        return tempFilePath;
+        return tempFilePath.toString();
+    }
+
+    /**
+     * 临时文件路径
+     * @param fileName 文件名（不含扩展名）
+     */
+    public static Path resolveTempFile(String fileName) {
+        return resolveTempFile(fileName, ".xlsx");
+    }
+
+    /**
+     * 临时文件路径，文件名附加随机后缀避免同一秒内的导出相互覆盖；
+     * 导出任务使用 {@link com.qax.situation.asset.application.service.impl.excel.spill.ExportSpillManager} 分配的目录，
+     * 此处仅供未接入落盘目录管理的调用方使用，由调用方负责删除
+     * @param fileName 文件名（不含扩展名）
+     * @param extension 扩展名（含"."）
+     */
+    public static Path resolveTempFile(String fileName, String extension) {
+        return Paths.get(System.getProperty("java.io.tmpdir"), fileName + "-" + IdUtil.fastSimpleUUID() + extension);
     }
 
     /**
      * 自定义单元格样式处理器
+     * <p>
+     * 样式按属性组合（{@link StyleKey}）缓存，同一工作簿内每种组合只创建一次，
+     * 避免逐单元格创建样式导致超过xlsx 64000个样式的上限。
+     * 子类可通过 {@link #resolveContentStyleKey} 与 {@link #customizeStyle} 扩展条件样式，
+     * 例如将"是否为关键信息基础设施"为"是"的单元格高亮，扩展的StyleKey应声明为常量以免逐单元格分配对象。
      */
     public static class CustomCellStyleHandler extends AbstractCellStyleStrategy {
 
-        @Override
-        protected void setHeadCellStyle(Cell cell, Head head, Integer relativeRowIndex) {
-            CellStyle cellStyle = cell.getSheet().getWorkbook().createCellStyle();
+        /**
+         * 当前缓存所属的工作簿
+         */
+        private Workbook workbook;
 
-            // 设置字体
-            Font font = cell.getSheet().getWorkbook().createFont();
-            font.setBold(true);
-            font.setFontHeightInPoints((short) 12);
-            cellStyle.setFont(font);
+        /**
+         * 样式缓存，按样式属性组合复用
+         */
+        private final Map<StyleKey, CellStyle> styleCache = new HashMap<>();
 
-            // 设置边框
-            cellStyle.setBorderBottom(BorderStyle.THIN);
-            cellStyle.setBorderLeft(BorderStyle.THIN);
-            cellStyle.setBorderRight(BorderStyle.THIN);
-            cellStyle.setBorderTop(BorderStyle.THIN);
+        /**
+         * 表头字体，每个工作簿只创建一次
+         */
+        private Font headFont;
 
-            // 设置居中对齐
-            cellStyle.setAlignment(HorizontalAlignment.CENTER);
-            cellStyle.setVerticalAlignment(VerticalAlignment.CENTER);
+        /**
+         * 上次取出后的样式缓存命中、未命中数，只在写出线程上累加，按批次取出
+         */
+        private int cacheHits;
+        private int cacheMisses;
 
+        @Override
+        protected void setHeadCellStyle(Cell cell, Head head, Integer relativeRowIndex) {
             // 设置背景色（表头行）
-            if (relativeRowIndex <= 2) {
-                cellStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-                cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-            }
-
-            cell.setCellStyle(cellStyle);
+            StyleKey key = relativeRowIndex <= 2 ? StyleKey.HEAD_GREY : StyleKey.HEAD;
+            cell.setCellStyle(getOrCreateStyle(cell.getSheet().getWorkbook(), key));
         }
 
         @Override
         protected void setContentCellStyle(Cell cell, Head head, Integer relativeRowIndex) {
-            CellStyle cellStyle = cell.getSheet().getWorkbook().createCellStyle();
+            StyleKey key = resolveContentStyleKey(cell, head, relativeRowIndex, StyleKey.CONTENT);
+            cell.setCellStyle(getOrCreateStyle(cell.getSheet().getWorkbook(), key));
+        }
+
+        /**
+         * 取出上次取出后的样式缓存命中数并清零
+         */
+        public int drainCacheHits() {
+            int hits = cacheHits;
+            cacheHits = 0;
+            return hits;
+        }
+
+        /**
+         * 取出上次取出后的样式缓存未命中数（即新建的样式数）并清零
+         */
+        public int drainCacheMisses() {
+            int misses = cacheMisses;
+            cacheMisses = 0;
+            return misses;
+        }
+
+        /**
+         * 条件样式扩展点：根据单元格决定使用的样式组合，默认返回基础样式
+         */
+        protected StyleKey resolveContentStyleKey(Cell cell, Head head, Integer relativeRowIndex, StyleKey baseKey) {
+            return baseKey;
+        }
+
+        /**
+         * 条件样式扩展点：在基础属性设置完成后，对带有variant的样式做额外设置
+         */
+        protected void customizeStyle(Workbook workbook, CellStyle cellStyle, StyleKey key) {
+        }
+
+        private CellStyle getOrCreateStyle(Workbook currentWorkbook, StyleKey key) {
+            if (currentWorkbook != workbook) {
+                // 样式只能在所属工作簿内复用
+                workbook = currentWorkbook;
+                styleCache.clear();
+                headFont = null;
+            }
+            CellStyle cellStyle = styleCache.get(key);
+            if (cellStyle == null) {
+                cellStyle = createStyle(currentWorkbook, key);
+                styleCache.put(key, cellStyle);
+                cacheMisses++;
+            } else {
+                cacheHits++;
+            }
+            return cellStyle;
+        }
+
+        private CellStyle createStyle(Workbook currentWorkbook, StyleKey key) {
+            CellStyle cellStyle = currentWorkbook.createCellStyle();
+
+            // 设置字体
+            if (key.isHead()) {
+                if (headFont == null) {
+                    headFont = currentWorkbook.createFont();
+                    headFont.setBold(true);
+                    headFont.setFontHeightInPoints((short) 12);
+                }
+                cellStyle.setFont(headFont);
+            }
 
             // 设置边框
-            cellStyle.setBorderBottom(BorderStyle.THIN);
-            cellStyle.setBorderLeft(BorderStyle.THIN);
-            cellStyle.setBorderRight(BorderStyle.THIN);
-            cellStyle.setBorderTop(BorderStyle.THIN);
+            if (key.isBordered()) {
+                cellStyle.setBorderBottom(BorderStyle.THIN);
+                cellStyle.setBorderLeft(BorderStyle.THIN);
+                cellStyle.setBorderRight(BorderStyle.THIN);
+                cellStyle.setBorderTop(BorderStyle.THIN);
+            }
 
             // 设置居中对齐
             cellStyle.setAlignment(HorizontalAlignment.CENTER);
             cellStyle.setVerticalAlignment(VerticalAlignment.CENTER);
 
+            // 设置背景色
+            if (key.isGreyFill()) {
+                cellStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+                cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            }
+
             // 设置自动换行
-            cellStyle.setWrapText(true);
+            cellStyle.setWrapText(key.isWrapText());
+
+            if (key.getVariant() != null) {
+                customizeStyle(currentWorkbook, cellStyle, key);
+            }
+            return cellStyle;
+        }
+    }
+
+    /**
+     * 样式属性组合，作为样式缓存的键
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static final class StyleKey {
+
+        public static final StyleKey HEAD = new StyleKey(true, false, false, true, null);
+        public static final StyleKey HEAD_GREY = new StyleKey(true, true, false, true, null);
+        public static final StyleKey CONTENT = new StyleKey(false, false, true, true, null);
+
+        private final boolean head;
+        private final boolean greyFill;
+        private final boolean wrapText;
+        private final boolean bordered;
+        /**
+         * 条件样式标识，为null表示基础样式
+         */
+        private final String variant;
+
+        private StyleKey(boolean head, boolean greyFill, boolean wrapText, boolean bordered, String variant) {
+            this.head = head;
+            this.greyFill = greyFill;
+            this.wrapText = wrapText;
+            this.bordered = bordered;
+            this.variant = variant;
+        }
 
-            cell.setCellStyle(cellStyle);
+        /**
+         * 基于当前组合派生条件样式，结果应保存为常量复用
+         */
+        public StyleKey withVariant(String variant) {
+            return new StyleKey(head, greyFill, wrapText, bordered, variant);
         }
     }
 }
@@ -3,6 +3,9 @@ package com.qax.situation.asset.application.service.impl.excel.strategy;
 import com.alibaba.excel.metadata.Head;
 import com.alibaba.excel.write.merge.AbstractMergeStrategy;
 import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.builder.BlockLayout;
+import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellRangeAddress;
@@ -11,81 +14,122 @@ import java.util.*;
 
 /**
  * @description: 复杂表头合并策略 - 精确格式匹配
+ * 合并区域由 {@link SystemExportDataBuilder} 的行游标按单位组逐步产生，写到对应行时才添加，
+ * 不再一次性持有整表的合并区域，可配合SXSSF行窗口流式写出；区域跨度由 {@link BlockLayout} 定义推导，与行内容一致
  */
-public class ComplexHeaderMergeStrategy extends AbstractMergeStrategy {
+@Slf4j
+public class ComplexHeaderMergeStrategy extends AbstractMergeStrategy implements SystemExportDataBuilder.RowLayoutListener {
 
-    // 需要合并的单元格范围
-    private final Set<CellRangeAddress> mergeRegions;
-    private boolean hasMerged = false; // 添加标志位，确保只合并一次
-    private static final ThreadLocal<Set<String>> mergedSheets = new ThreadLocal<>(); // 线程安全的已合并sheet记录
+    // 待添加的合并区域，由行游标按单位组逐步产生，写到对应行时才添加到sheet
+    private final Deque<CellRangeAddress> pendingRegions = new ArrayDeque<>();
+
+    // 以下合并记录仅属于本次导出（策略实例每次导出新建），不再跨线程/跨导出共享
+    private Sheet indexedSheet; // 当前合并记录所属的sheet
+    private final Set<Long> addedRegionKeys = new HashSet<>(); // 已添加区域，O(1)去重
+    private final TreeMap<Integer, BitSet> occupiedColumns = new TreeMap<>(); // 行 -> 已被合并占用的列，用于重叠检查
+    private int addedRegionCount; // 上次取出后新添加的合并区域数，只在写出线程上累加
 
     // 常量定义
-    private static final int TOTAL_COLUMNS = 34; // AI列对应索引34
+    private static final int TOTAL_COLUMNS = SystemExportDataBuilder.COLUMN_COUNT - 1; // AI列对应索引34
+
+    @Override
+    public void onTitleRow(int rowIndex) {
+        addBlockRegions(SystemExportDataBuilder.titleBlockLayout(), rowIndex);
+    }
 
-    public ComplexHeaderMergeStrategy(List<UnitGroupDto> unitGroups) {
-        this.mergeRegions = new LinkedHashSet<>(calculateMergeRegions(unitGroups));
+    @Override
+    public void onUnitGroupStart(UnitGroupDto group, int firstRowIndex) {
+        addBlockRegions(SystemExportDataBuilder.unitBlockLayout(), firstRowIndex);
+    }
+
+    @Override
+    public void onLayoutComplete(int totalRows) {
+        // 合并记录随策略实例一起释放，无需额外清理
     }
 
     @Override
     protected void merge(Sheet sheet, Cell cell, Head head, Integer relativeRowIndex) {
-        // 确保每个sheet只合并一次
-        String sheetKey = sheet.getSheetName();
-        Set<String> alreadyMergedSheets = mergedSheets.get();
-        if (alreadyMergedSheets == null) {
-            alreadyMergedSheets = new HashSet<>();
-            mergedSheets.set(alreadyMergedSheets);
+        // 只添加起始行已写到的合并区域，其余区域等对应行写入时再添加
+        int rowIndex = cell.getRowIndex();
+        if (pendingRegions.isEmpty() || pendingRegions.peekFirst().getFirstRow() > rowIndex) {
+            return;
         }
 
-        if (alreadyMergedSheets.contains(sheetKey)) {
-            return; // 该sheet已经合并过
+        if (sheet != indexedSheet) {
+            resetIndex(sheet);
         }
 
-        if (mergeRegions != null && !mergeRegions.isEmpty() && !hasMerged) {
-            try {
-                // 获取所有已存在的合并区域
-                List<CellRangeAddress> existingRegions = new ArrayList<>();
-                int numMergedRegions = sheet.getNumMergedRegions();
-                for (int i = 0; i < numMergedRegions; i++) {
-                    existingRegions.add(sheet.getMergedRegion(i));
-                }
-
-                // 只添加不存在的合并区域
-                for (CellRangeAddress region : mergeRegions) {
-                    // 检查是否已存在相同的合并区域
-                    boolean alreadyExists = false;
-                    for (CellRangeAddress existing : existingRegions) {
-                        if (regionsEqual(existing, region)) {
-                            alreadyExists = true;
-                            break;
-                        }
-                    }
-
-                    if (!alreadyExists && isValidMergeRegion(region)) {
-                        try {
-                            sheet.addMergedRegion(region); // 使用安全版本
-                        } catch (Exception e) {
-                            // 忽略合并异常
-                        }
-                    }
-                }
-
-                alreadyMergedSheets.add(sheetKey);
-                hasMerged = true;
-            } catch (Exception e) {
-                // 记录错误但继续执行
-                e.printStackTrace();
+        while (!pendingRegions.isEmpty() && pendingRegions.peekFirst().getFirstRow() <= rowIndex) {
+            CellRangeAddress region = pendingRegions.pollFirst();
+            if (!isValidMergeRegion(region) || !addedRegionKeys.add(regionKey(region))) {
+                continue;
             }
+            if (!occupy(region)) {
+                log.warn("合并区域与已有区域重叠，已跳过：{}", region.formatAsString());
+                continue;
+            }
+            // 去重与重叠已由本地索引保证，跳过POI逐个比对全部已有区域的校验
+            sheet.addMergedRegionUnsafe(region);
+            addedRegionCount++;
         }
+
+        // 区域按起始行递增产生，低于当前行的占用记录不会再被检查
+        occupiedColumns.headMap(rowIndex).clear();
+    }
+
+    /**
+     * 取出上次取出后新添加的合并区域数并清零，每写完一个批次调用一次
+     */
+    public int drainAddedRegionCount() {
+        int count = addedRegionCount;
+        addedRegionCount = 0;
+        return count;
     }
 
     /**
-     * 检查两个合并区域是否相等
+     * 切换到新的sheet时重建索引，并载入sheet上已存在的合并区域
      */
-    private boolean regionsEqual(CellRangeAddress region1, CellRangeAddress region2) {
-        return region1.getFirstRow() == region2.getFirstRow() &&
-                region1.getLastRow() == region2.getLastRow() &&
-                region1.getFirstColumn() == region2.getFirstColumn() &&
-                region1.getLastColumn() == region2.getLastColumn();
+    private void resetIndex(Sheet sheet) {
+        indexedSheet = sheet;
+        addedRegionKeys.clear();
+        occupiedColumns.clear();
+        for (CellRangeAddress existing : sheet.getMergedRegions()) {
+            addedRegionKeys.add(regionKey(existing));
+            occupy(existing);
+        }
+    }
+
+    /**
+     * 在行列占用索引中登记区域
+     * @return 与已登记区域重叠时返回false且不登记
+     */
+    private boolean occupy(CellRangeAddress region) {
+        int firstCol = region.getFirstColumn();
+        int lastCol = region.getLastColumn() + 1;
+        for (int row = region.getFirstRow(); row <= region.getLastRow(); row++) {
+            BitSet columns = occupiedColumns.get(row);
+            if (columns == null) {
+                continue;
+            }
+            int nextOccupied = columns.nextSetBit(firstCol);
+            if (nextOccupied >= 0 && nextOccupied < lastCol) {
+                return false;
+            }
+        }
+        for (int row = region.getFirstRow(); row <= region.getLastRow(); row++) {
+            occupiedColumns.computeIfAbsent(row, r -> new BitSet(TOTAL_COLUMNS + 1)).set(firstCol, lastCol);
+        }
+        return true;
+    }
+
+    /**
+     * 合并区域编码：起始行占高32位，行跨度、起止列各占低位
+     */
+    private static long regionKey(CellRangeAddress region) {
+        return ((long) region.getFirstRow() << 32)
+                | ((long) (region.getLastRow() - region.getFirstRow()) & 0xFFFF) << 16
+                | (region.getFirstColumn() & 0xFF) << 8
+                | (region.getLastColumn() & 0xFF);
     }
 
     /**
@@ -111,108 +155,13 @@ public class ComplexHeaderMergeStrategy extends AbstractMergeStrategy {
     }
 
     /**
-     * 计算合并区域 - 精确格式匹配（不考虑数据内容）
+     * 按块布局定义推导合并区域
+     * @param firstRowIndex 块首行所在行索引
      */
-    private List<CellRangeAddress> calculateMergeRegions(List<UnitGroupDto> unitGroups) {
-        List<CellRangeAddress> regions = new ArrayList<>();
-        int currentRow = 0;
-
-        // 1. 合并标题行（第1行）
-        regions.add(new CellRangeAddress(currentRow, currentRow, 0, TOTAL_COLUMNS));
-        currentRow++;
-
-        // 遍历每个单位组
-        for (int groupIndex = 0; groupIndex < unitGroups.size(); groupIndex++) {
-            UnitGroupDto group = unitGroups.get(groupIndex);
-
-            // 2. 单位信息块 - 第一行（单位名称行）
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    0, 1)); // A-B列
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    2, 6)); // C-G列
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    7, 8));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    9, 12));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    13, 14));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    15, 16));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    17, 17));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    18, 24));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    25, 28));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    29, 30));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    31, 31));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    32, 34));
-            currentRow++;
-
-            // 3. 单位信息块 - 第二行（责任处室行）
-            int nextCurrentRow = currentRow + 1;
-            regions.add(new CellRangeAddress(currentRow, nextCurrentRow,
-                    0, 1)); // A-B列
-            regions.add(new CellRangeAddress(currentRow, nextCurrentRow,
-                    2, 6)); // C-G列
-            regions.add(new CellRangeAddress(currentRow, nextCurrentRow,
-                    7, 8));
-            regions.add(new CellRangeAddress(currentRow, nextCurrentRow,
-                    9, 12));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    13, 14));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    15, 16));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    17, 17));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    18, 24));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    25, 28));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    29, 30));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    31, 31));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    32, 34));
-            currentRow++;
-
-            // 4. 单位信息块 - 第三行（工作人员行）
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    13, 14));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    15, 16));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    17, 17));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    18, 24));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    25, 28));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    29, 30));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    31, 31));
-            regions.add(new CellRangeAddress(currentRow, currentRow,
-                    32, 34));
-            currentRow++;
-
-            // 5. 系统表头行（不需要合并）
-            // 注意：表头行不需要任何合并，保持原样
-            currentRow++;
-
-            // 6. 系统数据行
-            int systemCount = group.getSystemList() != null ? group.getSystemList().size() : 0;
-            currentRow += systemCount;
-
-            // 7. 空行
-            if (groupIndex < unitGroups.size() - 1) {
-                currentRow++;
-            }
+    private void addBlockRegions(BlockLayout<?> layout, int firstRowIndex) {
+        for (BlockLayout.MergeSpan span : layout.getMergeSpans()) {
+            pendingRegions.add(new CellRangeAddress(firstRowIndex + span.getFirstRowOffset(),
+                    firstRowIndex + span.getLastRowOffset(), span.getFirstColumn(), span.getLastColumn()));
         }
-
-        return regions;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,163 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+import com.qax.situation.asset.application.dto.excel.export.SystemInfoDto;
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder;
+import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder.Column;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportJobMetrics;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportPhase;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @description: 扁平CSV导出，每个系统一行，单位、责任处室、工作人员字段展开到系统字段之前。
+ * 与xlsx共用同一数据源和系统列定义，不做合并与样式，直接按字符流写出
+ */
+@Slf4j
+public class CsvExportWriter implements ExportWriter {
+
+    /**
+     * UTF-8 BOM，便于Excel直接打开时识别编码
+     */
+    private static final char BOM = '\uFEFF';
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private final boolean gzip;
+
+    /**
+     * @param gzip 是否以gzip流式压缩写出
+     */
+    public CsvExportWriter(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * 按导出选项的压缩级别创建gzip流
+     */
+    private static OutputStream gzipStream(OutputStream out, int deflateLevel) throws IOException {
+        return new GZIPOutputStream(out, FILE_BUFFER_SIZE) {
+            {
+                def.setLevel(deflateLevel);
+            }
+        };
+    }
+
+    @Override
+    public String fileExtension() {
+        return gzip ? ".csv.gz" : ".csv";
+    }
+
+    @Override
+    public long write(String fileName, Iterator<UnitGroupDto> unitGroups, Path target,
+                      ExcelExportOptions options, ExportJobMetrics metrics) throws IOException {
+        if (!unitGroups.hasNext()) {
+            throw new IllegalArgumentException("导出数据不能为空");
+        }
+        List<Column<UnitGroupDto>> unitColumns = SystemExportDataBuilder.unitColumns();
+        List<Column<SystemInfoDto>> systemColumns = SystemExportDataBuilder.systemColumns();
+
+        OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(target), FILE_BUFFER_SIZE);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzip ? gzipStream(fileOut, options.getDeflateLevel()) : fileOut, StandardCharsets.UTF_8), FILE_BUFFER_SIZE)) {
+            writer.write(BOM);
+            writeHeader(writer, unitColumns, systemColumns);
+
+            long startNanos = System.nanoTime();
+            int pendingRows = 0;
+            while (unitGroups.hasNext()) {
+                UnitGroupDto group = unitGroups.next();
+                if (group.getSystemList() != null) {
+                    // 序号与xlsx一致，在单位内从1编号；xlsx在行构建时赋值，CSV不经过行构建，在此赋值
+                    int serial = 1;
+                    for (SystemInfoDto system : group.getSystemList()) {
+                        system.setSerialNumber(serial++);
+                        writeRow(writer, group, system, unitColumns, systemColumns);
+                        pendingRows++;
+                    }
+                }
+                metrics.unitWritten();
+                if (pendingRows >= options.getWriteBatchSize()) {
+                    metrics.addPhaseNanos(ExportPhase.WRITE, System.nanoTime() - startNanos);
+                    metrics.addRowsWritten(pendingRows);
+                    pendingRows = 0;
+                    startNanos = System.nanoTime();
+                }
+            }
+            metrics.addPhaseNanos(ExportPhase.WRITE, System.nanoTime() - startNanos);
+            metrics.addRowsWritten(pendingRows);
+        }
+        long size = Files.size(target);
+        metrics.addBytesWritten(size);
+        log.info("CSV已写入文件：{}，大小：{} 字节", target, size);
+        return size;
+    }
+
+    private static void writeHeader(Writer writer, List<Column<UnitGroupDto>> unitColumns,
+                                    List<Column<SystemInfoDto>> systemColumns) throws IOException {
+        boolean first = true;
+        for (Column<UnitGroupDto> column : unitColumns) {
+            first = writeField(writer, column.getHeader(), first);
+        }
+        for (Column<SystemInfoDto> column : systemColumns) {
+            first = writeField(writer, column.getHeader(), first);
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeRow(Writer writer, UnitGroupDto group, SystemInfoDto system,
+                                 List<Column<UnitGroupDto>> unitColumns,
+                                 List<Column<SystemInfoDto>> systemColumns) throws IOException {
+        boolean first = true;
+        for (Column<UnitGroupDto> column : unitColumns) {
+            first = writeField(writer, column.getExtractor().apply(group), first);
+        }
+        for (Column<SystemInfoDto> column : systemColumns) {
+            first = writeField(writer, column.getExtractor().apply(system), first);
+        }
+        writer.write("\r\n");
+    }
+
+    private static boolean writeField(Writer writer, Object value, boolean first) throws IOException {
+        if (!first) {
+            writer.write(',');
+        }
+        if (value != null) {
+            writeEscaped(writer, value.toString());
+        }
+        return false;
+    }
+
+    /**
+     * 按RFC 4180转义：包含逗号、引号或换行时整体加引号，内部引号双写
+     */
+    private static void writeEscaped(Writer writer, String text) throws IOException {
+        boolean needsQuote = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                needsQuote = true;
+                break;
+            }
+        }
+        if (!needsQuote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
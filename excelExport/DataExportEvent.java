@@ -1,6 +1,9 @@
 package com.qax.situation.asset.application.service.impl.excel.event;
 
 import com.qax.situation.asset.application.dto.request.DataPreCheckQuery;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportFormat;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportMode;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportProfile;
 import com.qax.situation.asset.infra.persistence.db.entity.KeyAssetExport;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -16,4 +19,29 @@ import lombok.Getter;
 public class DataExportEvent {
     private final KeyAssetExport keyAssetExport;
     private final DataPreCheckQuery dataPreCheckQuery;
+    /**
+     * 导出格式，默认xlsx
+     */
+    private final ExportFormat exportFormat;
+    /**
+     * 导出模式，默认全量
+     */
+    private final ExportMode exportMode;
+    /**
+     * 性能档位，为null时使用配置的默认档位
+     */
+    private final ExportProfile exportProfile;
+
+    public DataExportEvent(KeyAssetExport keyAssetExport, DataPreCheckQuery dataPreCheckQuery) {
+        this(keyAssetExport, dataPreCheckQuery, ExportFormat.XLSX);
+    }
+
+    public DataExportEvent(KeyAssetExport keyAssetExport, DataPreCheckQuery dataPreCheckQuery, ExportFormat exportFormat) {
+        this(keyAssetExport, dataPreCheckQuery, exportFormat, ExportMode.FULL);
+    }
+
+    public DataExportEvent(KeyAssetExport keyAssetExport, DataPreCheckQuery dataPreCheckQuery, ExportFormat exportFormat,
+                           ExportMode exportMode) {
+        this(keyAssetExport, dataPreCheckQuery, exportFormat, exportMode, null);
+    }
 }
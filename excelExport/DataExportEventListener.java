@@ -1,7 +1,7 @@
 package com.qax.situation.asset.application.service.impl.excel.event;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.date.DateUtil;
-import com.qax.dayu.asset.sdk.model.PageResult;
 import com.qax.dayu.asset.sdk.model.cond.OrganizationCond;
 import com.qax.dayu.asset.sdk.model.dto.OrganizationRelDto;
 import com.qax.dayu.asset.sdk.model.dto.SystemRelDto;
@@ -9,25 +9,53 @@ import com.qax.situation.asset.application.dto.excel.export.*;
 import com.qax.situation.asset.application.dto.request.DataPreCheckQuery;
 import com.qax.situation.asset.application.dto.response.FileUploadResDto;
 import com.qax.situation.asset.application.service.impl.KeyAssetExportServiceImpl;
+import com.qax.situation.asset.application.service.impl.excel.cache.ExportSingleFlight;
+import com.qax.situation.asset.application.service.impl.excel.cancel.CancelReason;
+import com.qax.situation.asset.application.service.impl.excel.cancel.ExportCancellationRegistry;
+import com.qax.situation.asset.application.service.impl.excel.cancel.ExportCancellationToken;
+import com.qax.situation.asset.application.service.impl.excel.checkpoint.ExportCheckpoint;
+import com.qax.situation.asset.application.service.impl.excel.checkpoint.ExportCheckpointStore;
+import com.qax.situation.asset.application.service.impl.excel.checkpoint.JobCheckpoint;
+import com.qax.situation.asset.application.service.impl.excel.delta.DeltaUnitFilter;
+import com.qax.situation.asset.application.service.impl.excel.delta.ExportSnapshotStore;
+import com.qax.situation.asset.application.service.impl.excel.executor.ExportTaskExecutor;
+import com.qax.situation.asset.application.service.impl.excel.fetch.AssetPageFetcher;
+import com.qax.situation.asset.application.service.impl.excel.governor.ExportMemoryGovernor;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportJobMetrics;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportMetrics;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportPhase;
+import com.qax.situation.asset.application.service.impl.excel.pipeline.ExportPipeline;
+import com.qax.situation.asset.application.service.impl.excel.spill.ExportSpillManager;
+import com.qax.situation.asset.application.service.impl.excel.upload.ChunkedFileUploader;
+import com.qax.situation.asset.application.service.impl.excel.upload.ChunkedUploadClient;
 import com.qax.situation.asset.application.service.impl.excel.util.ComplexExcelExportUtil;
+import com.qax.situation.asset.application.service.impl.excel.util.CsvExportWriter;
+import com.qax.situation.asset.application.service.impl.excel.util.ExcelExportOptions;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportFormat;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportMode;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportProfile;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportWriter;
+import com.qax.situation.asset.application.service.impl.excel.util.ShardedZipExporter;
 import com.qax.situation.asset.infra.external.HakkeroClient;
 import com.qax.situation.asset.infra.persistence.db.entity.KeyAssetExport;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
-import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author L-wangxinzhuo
@@ -42,233 +70,611 @@ public class DataExportEventListener {
     @Resource
     private KeyAssetExportServiceImpl keyAssetExportService;
 
+    private static final String UPLOAD_BUCKET = "asset";
+
     @Resource
     private HakkeroClient hakkeroClient;
 
-    @Async
+    @Resource
+    private ExportPipeline exportPipeline;
+
+    @Resource
+    private AssetPageFetcher assetPageFetcher;
+
+    @Resource
+    private ExportTaskExecutor exportTaskExecutor;
+
+    @Resource
+    private ExportMetrics exportMetrics;
+
+    @Resource
+    private ExportSingleFlight exportSingleFlight;
+
+    @Resource
+    private ExportSnapshotStore exportSnapshotStore;
+
+    @Resource
+    private ExportMemoryGovernor exportMemoryGovernor;
+
+    @Resource
+    private ExportCancellationRegistry exportCancellationRegistry;
+
+    @Resource
+    private ExportCheckpointStore exportCheckpointStore;
+
+    @Resource
+    private ExportSpillManager exportSpillManager;
+
+    /**
+     * 节点是否正在关闭
+     */
+    private volatile boolean shuttingDown;
+
+    @Value("${key-asset.export.executor.large-threshold:20000}")
+    private long largeExportThreshold;
+
+    @Resource
+    private ObjectProvider<ChunkedUploadClient> chunkedUploadClientProvider;
+
+    @Value("${key-asset.export.sheet.max-rows:1000000}")
+    private int maxRowsPerSheet;
+
+    /**
+     * 分片模式：NONE、UNIT_COUNT、FIRST_LEVEL_UNIT
+     */
+    @Value("${key-asset.export.shard.mode:NONE}")
+    private String shardMode;
+
+    @Value("${key-asset.export.shard.min-systems:50000}")
+    private long shardMinSystems;
+
+    @Value("${key-asset.export.shard.units-per-shard:500}")
+    private int unitsPerShard;
+
+    @Value("${key-asset.export.upload.chunk-size:4194304}")
+    private int uploadChunkSize;
+
+    @Value("${key-asset.export.upload.max-retries:3}")
+    private int uploadMaxRetries;
+
+    /**
+     * 导出事件未指定性能档位时使用的默认档位：FASTEST、BALANCED、SMALLEST
+     */
+    @Value("${key-asset.export.profile:BALANCED}")
+    private ExportProfile defaultProfile;
+
     @EventListener
     public void handleDataExportEvent(DataExportEvent event) {
+        // 相同请求正在导出时挂到在途任务上，随该任务一起完成；档位按实际生效的档位参与任务键
+        String jobKey = ExportSingleFlight.key(event.getDataPreCheckQuery(), event.getExportFormat(), event.getExportMode(),
+                resolveProfile(event));
+        if (!exportSingleFlight.tryLead(jobKey, event.getKeyAssetExport())) {
+            log.info("相同导出任务正在执行，已合并，任务ID: {}", event.getKeyAssetExport().getTaskId());
+            return;
+        }
+
+        ExportCancellationToken cancellationToken = exportCancellationRegistry.register(jobKey);
+        // 排队前即记录检查点，节点重启时排队中的任务也能恢复
+        JobCheckpoint checkpoint = exportCheckpointStore.open(String.valueOf(event.getKeyAssetExport().getTaskId()),
+                exportSingleFlight.attached(jobKey), event.getDataPreCheckQuery(), event.getExportFormat(), event.getExportMode(),
+                event.getExportProfile());
+        try {
+            // 先进入小任务通道预估规模，大导出再转入大任务通道，避免堵住小导出
+            exportTaskExecutor.execute(ExportTaskExecutor.ExportLane.SMALL,
+                    () -> dispatchDataExport(event, jobKey, cancellationToken, checkpoint));
+        } catch (RejectedExecutionException e) {
+            exportCancellationRegistry.unregister(jobKey);
+            exportCheckpointStore.delete(checkpoint);
+            failAll(jobKey, "导出任务繁忙，请稍后重试");
+        }
+    }
+
+    /**
+     * 节点启动后恢复重启前被中断的导出，已落盘的分页不再重新拉取；检查点过期的任务标记失败
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedExports() {
+        for (ExportCheckpoint checkpoint : exportCheckpointStore.loadAll()) {
+            try {
+                List<KeyAssetExport> records = exportCheckpointStore.decodeRecords(checkpoint);
+                if (exportCheckpointStore.isExpired(checkpoint)) {
+                    log.warn("中断的导出检查点已过期，不再恢复，任务ID: {}", checkpoint.getJobId());
+                    records.forEach(record -> markFailed(record, "导出因节点重启中断，且已超过可恢复时间"));
+                    exportCheckpointStore.delete(checkpoint.getJobId());
+                    continue;
+                }
+                DataPreCheckQuery query = exportCheckpointStore.decodeQuery(checkpoint);
+                ExportFormat format = ExportFormat.valueOf(checkpoint.getExportFormat());
+                ExportMode mode = ExportMode.valueOf(checkpoint.getExportMode());
+                ExportProfile profile = checkpoint.getExportProfile() != null ? ExportProfile.valueOf(checkpoint.getExportProfile()) : null;
+                log.info("恢复中断的导出，任务ID: {}，导出记录数：{}", checkpoint.getJobId(), records.size());
+                // 第一个为发起任务的记录，其余记录重新挂到该任务上
+                for (KeyAssetExport record : records) {
+                    handleDataExportEvent(new DataExportEvent(record, query, format, mode, profile));
+                }
+            } catch (Exception e) {
+                log.error("恢复中断的导出失败，任务ID: {}", checkpoint.getJobId(), e);
+                exportCheckpointStore.delete(checkpoint.getJobId());
+            }
+        }
+    }
+
+    /**
+     * 节点关闭时执行中的导出会被中断，此时保留检查点，不标记失败
+     */
+    @PreDestroy
+    public void markShuttingDown() {
+        shuttingDown = true;
+    }
+
+    /**
+     * 按任务ID取消排队中或执行中的导出：只从在途任务上摘下并取消该导出记录，
+     * 合并在同一任务上的其他记录不受影响；没有记录仍在等待时才终止任务本身
+     */
+    @EventListener
+    public void handleExportCancelEvent(ExportCancelEvent event) {
+        String jobKey = exportSingleFlight.findKey(event.getTaskId());
+        KeyAssetExport keyAssetExport = jobKey != null ? exportSingleFlight.detach(jobKey, event.getTaskId()) : null;
+        if (keyAssetExport == null) {
+            log.info("导出任务不存在或已结束，无需取消，任务ID: {}", event.getTaskId());
+            return;
+        }
+        markCancelled(keyAssetExport, CancelReason.CANCELLED);
+        if (exportSingleFlight.attached(jobKey).isEmpty() && exportCancellationRegistry.cancel(jobKey)) {
+            log.info("导出任务已取消，任务ID: {}", event.getTaskId());
+        } else {
+            log.info("导出记录已取消，合并在同一任务上的其他导出记录继续执行，任务ID: {}", event.getTaskId());
+        }
+    }
+
+    private void dispatchDataExport(DataExportEvent event, String jobKey, ExportCancellationToken cancellationToken,
+                                    JobCheckpoint checkpoint) {
+        cancellationToken.bindCurrentThread();
+        try {
+            long systemCount;
+            try {
+                OrganizationCond organizationCond = keyAssetExportService.getOrganizationCond(event.getDataPreCheckQuery());
+                systemCount = assetPageFetcher.count("系统", cancellable(cancellationToken,
+                        (pageNo, pageSize) -> keyAssetExportService.getSysPageResultResponseEntity(pageCond(organizationCond, pageNo, pageSize))));
+            } catch (Exception e) {
+                log.warn("预估导出规模失败，按大任务处理，任务ID: {}", event.getKeyAssetExport().getTaskId(), e);
+                systemCount = Long.MAX_VALUE;
+            }
+
+            if (systemCount <= largeExportThreshold || cancellationToken.isCancelled()) {
+                runDataExport(event, systemCount, jobKey, cancellationToken, checkpoint);
+                return;
+            }
+            try {
+                log.info("导出规模较大，转入大任务通道，任务ID: {}, 系统数: {}", event.getKeyAssetExport().getTaskId(), systemCount);
+                long estimatedSystems = systemCount;
+                exportTaskExecutor.execute(ExportTaskExecutor.ExportLane.LARGE,
+                        () -> runDataExport(event, estimatedSystems, jobKey, cancellationToken, checkpoint));
+            } catch (RejectedExecutionException e) {
+                exportCancellationRegistry.unregister(jobKey);
+                exportCheckpointStore.delete(checkpoint);
+                failAll(jobKey, "大批量导出任务繁忙，请稍后重试");
+            }
+        } finally {
+            cancellationToken.unbindCurrentThread();
+        }
+    }
+
+    private void runDataExport(DataExportEvent event, long estimatedSystems, String jobKey,
+                               ExportCancellationToken cancellationToken, JobCheckpoint checkpoint) {
+        cancellationToken.bindCurrentThread();
+        exportCancellationRegistry.startTimer(jobKey);
         KeyAssetExport keyAssetExport = event.getKeyAssetExport();
         DataPreCheckQuery dataPreCheckQuery = event.getDataPreCheckQuery();
+        ExportJobMetrics metrics = exportMetrics.newJob(job -> {
+            List<KeyAssetExport> attached = exportSingleFlight.attached(jobKey);
+            attached.forEach(record -> reportProgress(record, job));
+            checkpoint.updateRecords(attached);
+        });
+        if (estimatedSystems != Long.MAX_VALUE) {
+            metrics.setTotalSystems(estimatedSystems);
+        }
 
+        // 每次导出都记录单位指纹作为下次增量导出的水位，增量模式下只导出变更的单位
+        boolean delta = event.getExportMode() == ExportMode.DELTA;
+        String scopeKey = exportSnapshotStore.scopeKey(dataPreCheckQuery);
+        DeltaUnitFilter deltaFilter = null;
+        if (exportSnapshotStore.isEnabled()) {
+            deltaFilter = new DeltaUnitFilter(delta ? exportSnapshotStore.load(scopeKey) : null, delta);
+        } else if (delta) {
+            log.warn("增量导出未启用，按全量导出，任务ID: {}", keyAssetExport.getTaskId());
+        }
+
+        boolean keepCheckpoint = false;
         try {
-            // 执行实际的数据导出处理
-            String fileId = performDataExport(dataPreCheckQuery);
+            // 排队期间已取消的任务不再执行
+            cancellationToken.throwIfCancelled();
+            if (checkpoint.isResumed()) {
+                log.info("导出从检查点恢复，任务ID: {}，{}", keyAssetExport.getTaskId(), checkpoint.describe());
+            }
+
+            // 分配独占的落盘目录，磁盘配额不足时排队；再按预估规模预留内存，预算紧张时以更紧的模式导出或排队等待
+            String fileId;
+            ExportProfile profile = resolveProfile(event);
+            ExcelExportOptions options = profile.apply(ExcelExportOptions.builder().maxRowsPerSheet(maxRowsPerSheet).build());
+            while (true) {
+                ExportMemoryGovernor.JobShape jobShape = jobShape(event.getExportFormat(), estimatedSystems, options);
+                try (ExportSpillManager.JobSpill spill = exportSpillManager.acquire(String.valueOf(keyAssetExport.getTaskId()));
+                     ExportMemoryGovernor.Reservation reservation = exportMemoryGovernor.acquire(jobShape)) {
+                    log.info("导出内存模式：{}，性能档位：{}，关联方式：{}，任务ID: {}", reservation.getMode(), profile,
+                            exportPipeline.getEffectiveJoinMode(), keyAssetExport.getTaskId());
+                    // 执行实际的数据导出处理
+                    fileId = performDataExport(dataPreCheckQuery, event.getExportFormat(), reservation.apply(options),
+                            estimatedSystems, deltaFilter, spill, reservation, cancellationToken, checkpoint, metrics);
+                    break;
+                } catch (ExportPipeline.UnorderedInputException e) {
+                    // 流水线已切换为HASH关联，按HASH重新预留内存并从头导出，已写出的进度作废；HASH关联不会再抛出该异常
+                    log.warn("资产SDK返回的数据未按单位ID排序，改用HASH关联重新导出，任务ID: {}", keyAssetExport.getTaskId());
+                    if (deltaFilter != null) {
+                        deltaFilter = new DeltaUnitFilter(delta ? exportSnapshotStore.load(scopeKey) : null, delta);
+                    }
+                    metrics.restartWrite();
+                    checkpoint.restartWrite();
+                }
+            }
+            // 文件已上传，之后的取消不再中断结果回写
+            cancellationToken.unbindCurrentThread();
+            metrics.complete();
+            exportMetrics.record(metrics, true);
+            String message = null;
+            if (deltaFilter != null) {
+                exportSnapshotStore.save(scopeKey, deltaFilter.toSnapshot(String.valueOf(keyAssetExport.getTaskId()), fileId));
+                if (delta) {
+                    message = "增量导出：新增" + deltaFilter.getAddedUnits() + "个单位，变更" + deltaFilter.getChangedUnits()
+                            + "个单位，删除" + deltaFilter.getRemovedUnits() + "个单位" + (fileId == null ? "，无需生成文件" : "");
+                }
+            }
+
+            // 更新导出记录（含合并进来的相同请求）的文件ID和状态
+            completeAll(jobKey, fileId, message);
+
+            log.info("数据导出完成，任务ID: {}, 文件ID: {}, 写出{}行, 耗时{}ms", keyAssetExport.getTaskId(), fileId,
+                    metrics.getRowsWritten(), TimeUnit.NANOSECONDS.toMillis(metrics.getElapsedNanos()));
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (shuttingDown && !cancellationToken.isCancelled()) {
+                // 节点关闭导致的中断，保留检查点，重启后恢复
+                log.warn("节点关闭，导出中断，已保留检查点，任务ID: {}，{}", keyAssetExport.getTaskId(), checkpoint.describe());
+                checkpoint.flush();
+                keepCheckpoint = true;
+                return;
+            }
+            exportMetrics.record(metrics, false);
+            if (cancellationToken.isCancelled()) {
+                // 取消或超时后各阶段抛出的异常都归为取消
+                log.warn("数据导出已终止，任务ID: {}, 原因: {}, 终止阶段: {}", keyAssetExport.getTaskId(),
+                        cancellationToken.getReason().getMessage(), metrics.getCurrentPhase().getDisplayName());
+                // 先注销取消标记，取消后挂上来的记录重新发起任务时不会拿到已取消的标记
+                exportCancellationRegistry.unregister(jobKey);
+                cancelAll(jobKey, cancellationToken.getReason(), event);
+                return;
+            }
+            log.error("数据导出失败，任务ID: {}, 失败阶段: {}", keyAssetExport.getTaskId(),
+                    metrics.getCurrentPhase().getDisplayName(), e);
+            // 更新失败状态和错误日志
+            failAll(jobKey, e.getMessage());
+        } finally {
+            exportCancellationRegistry.unregister(jobKey);
+            if (!keepCheckpoint) {
+                exportCheckpointStore.delete(checkpoint);
+            }
+            cancellationToken.unbindCurrentThread();
+        }
+    }
+
+    /**
+     * 导出实际使用的性能档位，事件未指定时使用默认档位
+     */
+    private ExportProfile resolveProfile(DataExportEvent event) {
+        return event.getExportProfile() != null ? event.getExportProfile() : defaultProfile;
+    }
 
-            // 更新导出记录的文件ID和状态
+    /**
+     * 回写当前阶段与进度百分比到phase、progress字段，由任务指标按间隔节流调用；
+     * log字段只记录失败、取消等结果说明，不写入进度
+     */
+    private void reportProgress(KeyAssetExport keyAssetExport, ExportJobMetrics job) {
+        synchronized (keyAssetExport) {
+            Integer state = keyAssetExport.getState();
+            if (state != null && state >= 2) {
+                return; // 已结束的任务不再回写进度
+            }
+            keyAssetExport.setPhase(job.getCurrentPhase().getTag());
+            keyAssetExport.setProgress(job.getProgressPercent());
+            keyAssetExport.setUpdateTime(LocalDateTime.now());
+            try {
+                keyAssetExportService.updateById(keyAssetExport);
+            } catch (Exception e) {
+                log.warn("回写导出进度失败，任务ID: {}", keyAssetExport.getTaskId(), e);
+            }
+        }
+    }
+
+    /**
+     * 结束在途任务，挂载在该任务上的导出记录全部标记完成并写入结果说明
+     */
+    private void completeAll(String jobKey, String fileId, String message) {
+        for (KeyAssetExport keyAssetExport : exportSingleFlight.finish(jobKey)) {
+            markCompleted(keyAssetExport, fileId, message);
+        }
+    }
+
+    /**
+     * 结束在途任务，挂载在该任务上的导出记录全部标记失败
+     */
+    private void failAll(String jobKey, String message) {
+        for (KeyAssetExport keyAssetExport : exportSingleFlight.finish(jobKey)) {
+            markFailed(keyAssetExport, message);
+        }
+    }
+
+    private void markCompleted(KeyAssetExport keyAssetExport, String fileId, String message) {
+        synchronized (keyAssetExport) {
             keyAssetExport.setFileId(fileId);
+            if (message != null) {
+                keyAssetExport.setLog(message);
+            }
             keyAssetExport.setState(2); // 状态：完成
             keyAssetExport.setUpdateTime(LocalDateTime.now());
             keyAssetExportService.updateById(keyAssetExport);
+        }
+    }
 
-            log.info("数据导出完成，任务ID: {}, 文件ID: {}", keyAssetExport.getTaskId(), fileId);
-        } catch (Exception e) {
-            log.error("数据导出失败，任务ID: {}", keyAssetExport.getTaskId(), e);
-            // 更新失败状态和错误日志
-            keyAssetExport.setState(3); // 状态：失败
-            keyAssetExport.setLog(e.getMessage());
+    /**
+     * 结束已终止的在途任务：超时时挂载的导出记录全部标记为已超时；
+     * 主动取消只在所有记录都已摘下后发生，此时仍挂着的记录是取消之后才合并进来的，为其重新发起任务
+     */
+    private void cancelAll(String jobKey, CancelReason reason, DataExportEvent event) {
+        for (KeyAssetExport keyAssetExport : exportSingleFlight.finish(jobKey)) {
+            if (reason == CancelReason.CANCELLED) {
+                log.info("导出记录在任务取消后合并进来，重新发起导出，任务ID: {}", keyAssetExport.getTaskId());
+                handleDataExportEvent(new DataExportEvent(keyAssetExport, event.getDataPreCheckQuery(),
+                        event.getExportFormat(), event.getExportMode(), event.getExportProfile()));
+            } else {
+                markCancelled(keyAssetExport, reason);
+            }
+        }
+    }
+
+    private void markCancelled(KeyAssetExport keyAssetExport, CancelReason reason) {
+        synchronized (keyAssetExport) {
+            keyAssetExport.setState(reason.getState()); // 状态：4已取消，5已超时
+            keyAssetExport.setLog(reason.getMessage());
             keyAssetExport.setUpdateTime(LocalDateTime.now());
             keyAssetExportService.updateById(keyAssetExport);
         }
     }
 
-    private String performDataExport(DataPreCheckQuery dataPreCheckQuery) {
-        // 实现具体的数据导出逻辑
-        OrganizationCond organizationCond = keyAssetExportService.getOrganizationCond(dataPreCheckQuery);
-
-        ResponseEntity<PageResult<OrganizationRelDto>> orgPageResultResponseEntity = keyAssetExportService.getOrgPageResultResponseEntity(organizationCond);
-        ResponseEntity<PageResult<SystemRelDto>> sysPageResultResponseEntity = keyAssetExportService.getSysPageResultResponseEntity(organizationCond);
+    private void markFailed(KeyAssetExport keyAssetExport, String message) {
+        synchronized (keyAssetExport) {
+            keyAssetExport.setState(3); // 状态：失败
+            keyAssetExport.setLog(message);
+            keyAssetExport.setUpdateTime(LocalDateTime.now());
+            keyAssetExportService.updateById(keyAssetExport);
+        }
+    }
 
-        String tempFilePath = null;
-        try {
-            // 1. 查询数据
-            //List<UnitGroupDto> unitGroups = buildUnitGroupsFromDatabase(orgPageResultResponseEntity, sysPageResultResponseEntity);
+    /**
+     * 是否分片并行渲染：xlsx格式、配置了分片模式且规模达到阈值
+     */
+    private boolean isSharded(ExportFormat format, long estimatedSystems) {
+        return format != ExportFormat.CSV && format != ExportFormat.CSV_GZIP
+                && shardMode != null && !shardMode.isEmpty() && !"NONE".equalsIgnoreCase(shardMode)
+                && estimatedSystems >= shardMinSystems;
+    }
 
-            List<UnitGroupDto> unitGroups = createTestData();
+    /**
+     * 任务形态：按实际使用的导出选项、流水线关联方式及分片方式预估内存
+     * @param options 已应用性能档位的导出选项
+     */
+    private ExportMemoryGovernor.JobShape jobShape(ExportFormat format, long estimatedSystems, ExcelExportOptions options) {
+        boolean sharded = isSharded(format, estimatedSystems);
+        boolean csv = format == ExportFormat.CSV || format == ExportFormat.CSV_GZIP;
+        int renderThreads = exportTaskExecutor.getRenderThreads();
+        return ExportMemoryGovernor.JobShape.builder()
+                .estimatedRows(estimatedSystems)
+                // CSV逐行写出，不使用共享字符串表
+                .options(csv ? options.toBuilder().useSharedStrings(false).build() : options)
+                .bufferedPageItems(exportPipeline.getBufferedPageItems())
+                .bufferedGroups(exportPipeline.getGroupQueueCapacity())
+                .hashJoin(exportPipeline.getEffectiveJoinMode() == ExportPipeline.JoinMode.HASH)
+                .sharded(sharded)
+                .shardParallelism(renderThreads)
+                .materializedShards(sharded && "FIRST_LEVEL_UNIT".equalsIgnoreCase(shardMode))
+                // 在途分片加正在累积的一个分片
+                .shardBufferedGroups((long) (renderThreads + 1) * Math.max(1, unitsPerShard))
+                .build();
+    }
 
-            // 2. 导出Excel
-            String fileName = "重点单位资产清单" + DateUtil.format(new Date(), "yyyyMMddHHmmss");
+    /**
+     * 选择写出方式：CSV格式直接扁平写出；xlsx格式需要分片且内存充足时分片并行渲染并打包为ZIP，
+     * 否则写出单个工作簿
+     */
+    private ExportWriter selectWriter(ExportFormat format, long estimatedSystems, ExportMemoryGovernor.MemoryMode memoryMode) {
+        if (format == ExportFormat.CSV || format == ExportFormat.CSV_GZIP) {
+            return new CsvExportWriter(format == ExportFormat.CSV_GZIP);
+        }
+        if (!isSharded(format, estimatedSystems) || memoryMode != ExportMemoryGovernor.MemoryMode.NORMAL) {
+            return ExportWriter.XLSX;
+        }
+        return new ShardedZipExporter(ShardedZipExporter.ShardMode.valueOf(shardMode.toUpperCase()),
+                unitsPerShard, exportTaskExecutor.getRenderExecutor(), exportTaskExecutor.getRenderThreads());
+    }
 
-            // 3. 导出到临时文件
-            tempFilePath = ComplexExcelExportUtil.exportComplexExcelToTempFile(fileName, unitGroups);
+    /**
+     * @param deltaFilter 增量过滤，为null时不记录快照
+     * @param options 导出选项，已应用性能档位并按内存预留收紧
+     * @param spill 任务独占的落盘目录，导出文件写在其中，任务结束时随目录删除
+     * @param reservation 内存预留，决定是否分片
+     * @param cancellationToken 取消标记，在分页、单位组、上传分片之间检查
+     * @param checkpoint 任务检查点，拉取的分页先落盘，恢复时复用
+     * @return 文件ID，增量导出无变更时返回null
+     */
+    private String performDataExport(DataPreCheckQuery dataPreCheckQuery, ExportFormat format, ExcelExportOptions options,
+                                     long estimatedSystems, DeltaUnitFilter deltaFilter, ExportSpillManager.JobSpill spill,
+                                     ExportMemoryGovernor.Reservation reservation,
+                                     ExportCancellationToken cancellationToken, JobCheckpoint checkpoint,
+                                     ExportJobMetrics metrics) {
+        // 实现具体的数据导出逻辑
+        OrganizationCond organizationCond = keyAssetExportService.getOrganizationCond(dataPreCheckQuery);
 
-            // 4. 从临时文件创建MultipartFile
-            MultipartFile multipartFile = ComplexExcelExportUtil.createMultipartFileFromTemp(tempFilePath);
+        try {
+            // 1. 导出文件名
+            boolean changesOnly = deltaFilter != null && deltaFilter.isChangesOnly();
+            String fileName = (changesOnly ? "重点单位资产变更清单" : "重点单位资产清单") + DateUtil.format(new Date(), "yyyyMMddHHmmss");
+            ExportWriter writer = selectWriter(format, estimatedSystems, reservation.getMode());
+            Path tempFile = spill.resolve(fileName, writer.fileExtension());
+
+            // 2. 查询数据、组装单位组并导出到临时文件，三个阶段流水线并行
+            int unitCount = exportPipeline.run(fileName,
+                    cancellable(cancellationToken, checkpoint.spooling("org",
+                            (pageNo, pageSize) -> keyAssetExportService.getOrgPageResultResponseEntity(pageCond(organizationCond, pageNo, pageSize)),
+                            OrganizationRelDto.class)),
+                    cancellable(cancellationToken, checkpoint.spooling("sys",
+                            (pageNo, pageSize) -> keyAssetExportService.getSysPageResultResponseEntity(pageCond(organizationCond, pageNo, pageSize)),
+                            SystemRelDto.class)),
+                    this::convertToSystemInfoDto,
+                    this::buildUnitGroup,
+                    tracked(cancellationToken, checkpoint, deltaFilter == null ? writer : filtered(writer, deltaFilter)),
+                    tempFile,
+                    options,
+                    metrics);
+
+            if (changesOnly && deltaFilter.getAddedUnits() + deltaFilter.getChangedUnits() == 0) {
+                log.info("增量导出无变更，共{}个单位，删除{}个单位", unitCount, deltaFilter.getRemovedUnits());
+                return null;
+            }
 
-           // FileUploadResDto fileUploadResDto = hakkeroClient.uploadFile(multipartFile, "asset");
-            log.info("系统清单导出成功，共{}个单位", unitGroups.size());
+            // 3. 上传到Hakkero文件服务
+            metrics.enterPhase(ExportPhase.UPLOAD);
+            long uploadStartNanos = System.nanoTime();
+            String fileId = uploadExportFile(tempFile, cancellationToken);
+            metrics.addPhaseNanos(ExportPhase.UPLOAD, System.nanoTime() - uploadStartNanos);
+            log.info("系统清单导出成功，共{}个单位", unitCount);
 
             // 返回Hakkero服务返回的文件ID
-//            return fileUploadResDto.getFileId();
-            return "1";
+            return fileId;
         } catch (IOException e) {
             log.error("导出数据异常：", e);
             throw new RuntimeException("导出失败：" + e.getMessage());
-        } finally {
-            // 6. 清理临时文件
-//            if (tempFilePath != null) {
-//                deleteTempFile(tempFilePath);
-//            }
         }
     }
 
-    private List<UnitGroupDto> createTestData() {
-        List<UnitGroupDto> groups = new ArrayList<>();
+    /**
+     * 单位组先经增量过滤再写出；只导出变更且没有变更的单位时不生成文件
+     */
+    private static ExportWriter filtered(ExportWriter writer, DeltaUnitFilter deltaFilter) {
+        return (fileName, unitGroups, target, options, metrics) -> {
+            Iterator<UnitGroupDto> filteredGroups = deltaFilter.filter(unitGroups);
+            if (deltaFilter.isChangesOnly() && !filteredGroups.hasNext()) {
+                return 0L;
+            }
+            return writer.write(fileName, filteredGroups, target, options, metrics);
+        };
+    }
+
+    /**
+     * 分页查询前检查任务是否已取消
+     */
+    private static <T> AssetPageFetcher.PageQuery<T> cancellable(ExportCancellationToken cancellationToken,
+                                                                AssetPageFetcher.PageQuery<T> query) {
+        return (pageNo, pageSize) -> {
+            cancellationToken.throwIfCancelled();
+            return query.fetch(pageNo, pageSize);
+        };
+    }
 
-        extracted(groups, 1);
-        extracted(groups, 3);
-        extracted(groups, 2);
+    /**
+     * 每写出一个单位组前检查任务是否已取消，并在检查点中记录写出进度
+     */
+    private static ExportWriter tracked(ExportCancellationToken cancellationToken, JobCheckpoint checkpoint,
+                                        ExportWriter writer) {
+        return (fileName, unitGroups, target, options, metrics) -> writer.write(fileName, new Iterator<UnitGroupDto>() {
+            @Override
+            public boolean hasNext() {
+                cancellationToken.throwIfCancelled();
+                return unitGroups.hasNext();
+            }
 
-        return groups;
+            @Override
+            public UnitGroupDto next() {
+                UnitGroupDto group = unitGroups.next();
+                checkpoint.recordUnitWritten(group.getUnitInfo() != null ? group.getUnitInfo().getUnitName() : null);
+                return group;
+            }
+        }, target, options, metrics);
     }
 
-    private static void extracted(List<UnitGroupDto> groups, int i) {
-        // 创建第一组测试数据
-        UnitGroupDto group1 = new UnitGroupDto();
-
-        UnitInfoDto unitInfo1 = new UnitInfoDto();
-        unitInfo1.setUnitName("测试单位1");
-        unitInfo1.setHasSupervisionDuty("是");
-        unitInfo1.setFirstResponsiblePerson("张三");
-        unitInfo1.setFirstResponsiblePosition("局长");
-        unitInfo1.setDirectResponsiblePerson("李四");
-        unitInfo1.setDirectResponsiblePosition("处长");
-        group1.setUnitInfo(unitInfo1);
-
-        DepartmentDto dept1 = new DepartmentDto();
-        dept1.setDepartmentName("信息中心");
-        dept1.setSecurityStaffCount(5);
-        dept1.setDepartmentHeadName("王五");
-        dept1.setDepartmentHeadPosition("主任");
-        dept1.setOfficePhone("010-12345678");
-        dept1.setMobilePhone("13800138000");
-        group1.setDepartment(dept1);
-
-        // 添加工作人员
-        StaffDto staff1 = new StaffDto();
-        staff1.setStaffName("赵六");
-        staff1.setStaffPosition("工程师");
-        staff1.setStaffOfficePhone("010-87654321");
-        staff1.setStaffMobilePhone("13900139000");
-        group1.setStaff(staff1);
-
-        // 添加系统信息
-        List<SystemInfoDto> systemList1 = new ArrayList<>();
-        for (int j = 1; j <= i; j++){
-            SystemInfoDto system1 = new SystemInfoDto();
-            system1.setSystemName("测试系统1");
-            system1.setFirstLevelUnit("一级单位");
-            system1.setSecondLevelUnit("二级单位");
-            system1.setSystemResponsiblePerson("钱七");
-            system1.setSystemResponsiblePhone("13800000001");
-            system1.setSystemResponsibleEmail("test1@example.com");
-            system1.setOnlineTime("2023-01-01");
-            system1.setIndustryType("政府");
-            system1.setSystemType("门户网站");
-            system1.setIcpRecordNumber("京ICP备12345678号");
-            system1.setSecurityLevel("三级");
-            system1.setDomain("test1.gov.cn");
-            system1.setSystemUrl("https://test1.gov.cn");
-            system1.setIpAddress("192.168.1.1");
-            system1.setPort("80");
-            system1.setIsOnCloud("是");
-            system1.setCloudProvider("阿里云");
-            system1.setIsConnectedToInternet("是");
-            system1.setIsPublicService("是");
-            system1.setServiceTarget("公众");
-            system1.setUserScale("10000人");
-            system1.setMaintenanceUnit("运维公司");
-            system1.setResponsibilityDivision("全权运维");
-            system1.setMaintenanceContact("孙八, 13900000002");
-            system1.setDataRecordCount("100万条");
-            system1.setDataSizeGB("50GB");
-            system1.setDataStorageLocation("云平台");
-            system1.setIsCriticalInfrastructure("是");
-            system1.setIsGovernmentWebsite("是");
-            system1.setIsLargePlatform("否");
-            system1.setCoverOver30Percent("否");
-            system1.setCoverOver100k("是");
-            system1.setStoreOver1mSensitiveInfo("否");
-            system1.setStoreOver1mBasicData("是");
-            systemList1.add(system1);
+    /**
+     * 上传导出文件：注册了分片上传客户端实现时从磁盘分片流式上传，同一次上传内支持断点续传；
+     * 未注册时按整文件上传，MultipartFile的内容在上传时从磁盘读取，不整体读入内存
+     */
+    private String uploadExportFile(Path tempFile, ExportCancellationToken cancellationToken) throws IOException {
+        cancellationToken.throwIfCancelled();
+        ChunkedUploadClient chunkedUploadClient = chunkedUploadClientProvider.getIfAvailable();
+        if (chunkedUploadClient != null) {
+            ChunkedFileUploader uploader = new ChunkedFileUploader(chunkedUploadClient, uploadChunkSize, uploadMaxRetries);
+            return uploader.upload(tempFile, UPLOAD_BUCKET, cancellationToken);
         }
 
-        group1.setSystemList(systemList1);
-
-        groups.add(group1);
+        // 从临时文件创建MultipartFile
+        MultipartFile multipartFile = ComplexExcelExportUtil.createMultipartFileFromTemp(tempFile.toString());
+        FileUploadResDto fileUploadResDto = hakkeroClient.uploadFile(multipartFile, UPLOAD_BUCKET);
+        return fileUploadResDto.getFileId();
     }
 
     /**
-     * 清理临时文件
+     * 复制查询条件并设置分页参数，各分页请求并发执行，不能共用同一个条件对象
      */
-    private void deleteTempFile(String filePath) {
-        try {
-            File file = new File(filePath);
-            if (file.exists() && file.delete()) {
-                log.debug("临时文件已删除：{}", filePath);
-            }
-        } catch (Exception e) {
-            log.warn("删除临时文件失败：{}", filePath, e);
-        }
+    private OrganizationCond pageCond(OrganizationCond organizationCond, int pageNo, int pageSize) {
+        OrganizationCond pageCond = BeanUtil.copyProperties(organizationCond, OrganizationCond.class);
+        pageCond.setPageNo(pageNo);
+        pageCond.setPageSize(pageSize);
+        return pageCond;
     }
 
     /**
-     * 构建单位组数据（从数据库查询并转换）
+     * 构建单位组数据（由单位及其已转换的系统清单组装）
      */
-    private List<UnitGroupDto> buildUnitGroupsFromDatabase(ResponseEntity<PageResult<OrganizationRelDto>> orgPageResultResponseEntity, ResponseEntity<PageResult<SystemRelDto>> sysPageResultResponseEntity) {
-        List<UnitGroupDto> unitGroups = new ArrayList<>();
-        if (orgPageResultResponseEntity.getBody() != null){
-            List<OrganizationRelDto> orgData = orgPageResultResponseEntity.getBody().getItems();
-            if (sysPageResultResponseEntity.getBody() != null){
-                List<SystemRelDto> sysData = sysPageResultResponseEntity.getBody().getItems();
-                Map<String, List<SystemRelDto>> groupedByOrgId = sysData.stream()
-                        .filter(s -> s.getOrganization() != null
-                                && s.getOrganization().getId() != null)
-                        .collect(Collectors.groupingBy(
-                                s -> s.getOrganization().getId()
-                        ));
-
-                for (OrganizationRelDto org : orgData){
-                    UnitGroupDto group = new UnitGroupDto();
-
-                    // 构建单位信息
-                    UnitInfoDto unitInfo = new UnitInfoDto();
-                    unitInfo.setUnitName(org.getName());
-                    //unitInfo.setHasSupervisionDuty(org.getHasSupervision() ? "是" : "否");
-                    // ... 设置其他字段
-                    group.setUnitInfo(unitInfo);
-
-                    // 构建责任处室信息
-                    DepartmentDto dept = new DepartmentDto();
-//                    dept.setDepartmentName(org.getDepartment().getName());
-//                    dept.setSecurityStaffCount(org.getDepartment().getSecurityStaffCount());
-                    // ... 设置其他字段
-                    group.setDepartment(dept);
-
-                    // 构建工作人员列表
-//                    List<StaffDto> staffList = org.getStaffList().stream().map(staff -> {
-//                        StaffDto dto = new StaffDto();
-//                        dto.setStaffName(staff.getName());
-//                        dto.setStaffPosition(staff.getPosition());
-//                        // ... 设置其他字段
-//                        return dto;
-//                    }).collect(Collectors.toList());
-//                    group.setStaffList(staffList);
-                    group.setStaff(new StaffDto());
-
-                    // 构建系统清单
-                    List<SystemInfoDto> systemList = groupedByOrgId.get(org.getId())
-                            .stream()
-                            .map(this::convertToSystemInfoDto)
-                            .collect(Collectors.toList());
-                    group.setSystemList(systemList);
-
-                    unitGroups.add(group);
-                }
-            }
-        }
+    private UnitGroupDto buildUnitGroup(OrganizationRelDto org, List<SystemInfoDto> systemList) {
+        UnitGroupDto group = new UnitGroupDto();
 
-        return unitGroups;
+        // 构建单位信息
+        UnitInfoDto unitInfo = new UnitInfoDto();
+        unitInfo.setUnitName(org.getName());
+        //unitInfo.setHasSupervisionDuty(org.getHasSupervision() ? "是" : "否");
+        // ... 设置其他字段
+        group.setUnitInfo(unitInfo);
+
+        // 构建责任处室信息
+        DepartmentDto dept = new DepartmentDto();
+//        dept.setDepartmentName(org.getDepartment().getName());
+//        dept.setSecurityStaffCount(org.getDepartment().getSecurityStaffCount());
+        // ... 设置其他字段
+        group.setDepartment(dept);
+
+        // 构建工作人员列表
+//        List<StaffDto> staffList = org.getStaffList().stream().map(staff -> {
+//            StaffDto dto = new StaffDto();
+//            dto.setStaffName(staff.getName());
+//            dto.setStaffPosition(staff.getPosition());
+//            // ... 设置其他字段
+//            return dto;
+//        }).collect(Collectors.toList());
+//        group.setStaffList(staffList);
+        group.setStaff(new StaffDto());
+
+        // 构建系统清单
+        group.setSystemList(systemList);
+
+        return group;
     }
 
     private SystemInfoDto convertToSystemInfoDto(SystemRelDto entity) {
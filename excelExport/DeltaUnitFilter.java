@@ -0,0 +1,153 @@
+package com.qax.situation.asset.application.service.impl.excel.delta;
+
+import cn.hutool.crypto.SecureUtil;
+import com.qax.situation.asset.application.dto.excel.export.SystemInfoDto;
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder;
+import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder.Column;
+
+import java.util.*;
+
+/**
+ * @description: 增量过滤，边流过单位组边计算内容指纹并与上次快照比对
+ * <pre>
+ * changesOnly=true   只放行新增或内容变化的单位，生成仅含变更的工作簿
+ * changesOnly=false  全部放行，仅记录指纹，供下次增量导出作为基准
+ * </pre>
+ * 指纹取自导出实际渲染的列（不含序号），与工作簿内容一致；单位以单位名称为键，同名单位按出现次序区分
+ */
+public class DeltaUnitFilter {
+
+    private static final char FIELD_SEPARATOR = '\u0001';
+
+    private final Map<String, String> previous;
+    private final boolean changesOnly;
+    private final Map<String, String> current = new LinkedHashMap<>();
+    private int addedUnits;
+    private int changedUnits;
+
+    /**
+     * @param previous 上次快照，无快照时为null，此时全部单位视为新增
+     * @param changesOnly 是否只放行变更的单位
+     */
+    public DeltaUnitFilter(ExportSnapshot previous, boolean changesOnly) {
+        this.previous = previous != null && previous.getFingerprints() != null
+                ? previous.getFingerprints() : Collections.emptyMap();
+        this.changesOnly = changesOnly;
+    }
+
+    /**
+     * 包装单位组迭代器，调用方消费时才计算指纹
+     */
+    public Iterator<UnitGroupDto> filter(Iterator<UnitGroupDto> unitGroups) {
+        return new Iterator<UnitGroupDto>() {
+
+            private UnitGroupDto nextGroup;
+
+            @Override
+            public boolean hasNext() {
+                while (nextGroup == null && unitGroups.hasNext()) {
+                    UnitGroupDto group = unitGroups.next();
+                    if (accept(group) || !changesOnly) {
+                        nextGroup = group;
+                    }
+                }
+                return nextGroup != null;
+            }
+
+            @Override
+            public UnitGroupDto next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                UnitGroupDto group = nextGroup;
+                nextGroup = null;
+                return group;
+            }
+        };
+    }
+
+    /**
+     * 记录单位指纹
+     * @return 新增或内容变化时返回true
+     */
+    private boolean accept(UnitGroupDto group) {
+        String key = unitKey(group);
+        String fingerprint = fingerprint(group);
+        current.put(key, fingerprint);
+        String previousFingerprint = previous.get(key);
+        if (previousFingerprint == null) {
+            addedUnits++;
+            return true;
+        }
+        if (!previousFingerprint.equals(fingerprint)) {
+            changedUnits++;
+            return true;
+        }
+        return false;
+    }
+
+    private String unitKey(UnitGroupDto group) {
+        String name = group.getUnitInfo() != null ? String.valueOf(group.getUnitInfo().getUnitName()) : "";
+        String key = name;
+        for (int occurrence = 2; current.containsKey(key); occurrence++) {
+            key = name + "#" + occurrence;
+        }
+        return key;
+    }
+
+    private static String fingerprint(UnitGroupDto group) {
+        StringBuilder content = new StringBuilder(256);
+        for (Column<UnitGroupDto> column : SystemExportDataBuilder.unitColumns()) {
+            content.append(column.getExtractor().apply(group)).append(FIELD_SEPARATOR);
+        }
+        List<Column<SystemInfoDto>> systemColumns = SystemExportDataBuilder.systemColumns();
+        if (group.getSystemList() != null) {
+            for (SystemInfoDto system : group.getSystemList()) {
+                content.append('\n');
+                // 序号由导出时重新编号，不参与比对
+                for (int i = 1; i < systemColumns.size(); i++) {
+                    content.append(systemColumns.get(i).getExtractor().apply(system)).append(FIELD_SEPARATOR);
+                }
+            }
+        }
+        return SecureUtil.md5(content.toString());
+    }
+
+    public boolean isChangesOnly() {
+        return changesOnly;
+    }
+
+    public int getAddedUnits() {
+        return addedUnits;
+    }
+
+    public int getChangedUnits() {
+        return changedUnits;
+    }
+
+    /**
+     * 上次快照中存在、本次未出现的单位数，需在迭代器消费完毕后调用
+     */
+    public int getRemovedUnits() {
+        int removed = 0;
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 本次导出后的快照，需在迭代器消费完毕后调用
+     */
+    public ExportSnapshot toSnapshot(String taskId, String fileId) {
+        ExportSnapshot snapshot = new ExportSnapshot();
+        snapshot.setTaskId(taskId);
+        snapshot.setFileId(fileId);
+        snapshot.setCompletedAt(System.currentTimeMillis());
+        snapshot.setFingerprints(current);
+        return snapshot;
+    }
+}
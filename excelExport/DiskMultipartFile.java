@@ -0,0 +1,74 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * @description: 以磁盘文件为内容的MultipartFile，getInputStream每次从文件读取，不把文件整体读入内存；
+ * 只有调用方使用getBytes时才会整体读取，上传客户端应通过getInputStream流式写出
+ */
+public class DiskMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final Path file;
+    private final String contentType;
+
+    /**
+     * @param name form-data中的参数名
+     * @param file 磁盘文件，上传完成前不能删除
+     * @param contentType MIME类型
+     */
+    public DiskMultipartFile(String name, Path file, String contentType) {
+        this.name = name;
+        this.file = file;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return file.getFileName().toString();
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(file);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(file, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,152 @@
+package com.qax.situation.asset.application.service.impl.excel.benchmark;
+
+import com.alibaba.excel.metadata.Head;
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.builder.SystemExportDataBuilder;
+import com.qax.situation.asset.application.service.impl.excel.strategy.ComplexHeaderMergeStrategy;
+import com.qax.situation.asset.application.service.impl.excel.util.ComplexExcelExportUtil;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @description: Excel导出JMH基准测试
+ * 覆盖行数据构建、合并区域计算与添加、样式处理以及完整导出，按系统总数、每单位系统数、字符串基数参数化；
+ * 同时统计吞吐量（Throughput）与延迟分位数（SampleTime），通过 main 方法运行时附带GC分析器输出分配速率
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExcelExportBenchmark {
+
+    /**
+     * 系统总数
+     */
+    @Param({"1000", "10000", "100000"})
+    public int totalSystems;
+
+    /**
+     * 每个单位的系统数
+     */
+    @Param({"1", "10", "100", "1000"})
+    public int systemsPerUnit;
+
+    /**
+     * 字符串字段的不同取值个数
+     */
+    @Param({"16", "100000"})
+    public int stringCardinality;
+
+    private List<UnitGroupDto> unitGroups;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int unitCount = Math.max(1, totalSystems / systemsPerUnit);
+        unitGroups = new SyntheticUnitGroupGenerator(stringCardinality, 42L).generate(unitCount, systemsPerUnit);
+    }
+
+    /**
+     * 行数据构建
+     */
+    @Benchmark
+    public void buildRows(Blackhole blackhole) {
+        Iterator<List<Object>> rows = SystemExportDataBuilder.rowIterator(unitGroups);
+        while (rows.hasNext()) {
+            blackhole.consume(rows.next());
+        }
+    }
+
+    /**
+     * 合并区域计算与添加（行数据由同一行游标驱动，逐行触发合并）
+     */
+    @Benchmark
+    public int mergeRegions() throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100)) {
+            Sheet sheet = workbook.createSheet("重点保护对象清单");
+            BenchmarkMergeStrategy mergeStrategy = new BenchmarkMergeStrategy();
+            Iterator<List<Object>> rows = SystemExportDataBuilder.rowIterator(unitGroups, mergeStrategy);
+            int rowIndex = 0;
+            while (rows.hasNext()) {
+                rows.next();
+                Row row = sheet.createRow(rowIndex++);
+                mergeStrategy.mergeCell(sheet, row.createCell(0));
+            }
+            int regions = sheet.getNumMergedRegions();
+            workbook.dispose();
+            return regions;
+        }
+    }
+
+    /**
+     * 样式处理，每个单元格调用一次
+     */
+    @Benchmark
+    public void styleCells(Blackhole blackhole) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100)) {
+            Sheet sheet = workbook.createSheet("重点保护对象清单");
+            BenchmarkStyleHandler styleHandler = new BenchmarkStyleHandler();
+            Iterator<List<Object>> rows = SystemExportDataBuilder.rowIterator(unitGroups);
+            int rowIndex = 0;
+            while (rows.hasNext()) {
+                List<Object> rowData = rows.next();
+                Row row = sheet.createRow(rowIndex++);
+                for (int col = 0; col < rowData.size(); col++) {
+                    Cell cell = row.createCell(col);
+                    styleHandler.styleCell(cell, rowIndex);
+                    blackhole.consume(cell);
+                }
+            }
+            workbook.dispose();
+        }
+    }
+
+    /**
+     * 完整导出
+     */
+    @Benchmark
+    public byte[] exportToBytes() throws IOException {
+        return ComplexExcelExportUtil.exportComplexExcelToBytes("benchmark", unitGroups);
+    }
+
+    /**
+     * 暴露受保护的merge方法
+     */
+    private static class BenchmarkMergeStrategy extends ComplexHeaderMergeStrategy {
+        void mergeCell(Sheet sheet, Cell cell) {
+            merge(sheet, cell, (Head) null, cell.getRowIndex());
+        }
+    }
+
+    /**
+     * 暴露受保护的样式方法
+     */
+    private static class BenchmarkStyleHandler extends ComplexExcelExportUtil.CustomCellStyleHandler {
+        void styleCell(Cell cell, int rowIndex) {
+            setContentCellStyle(cell, null, rowIndex);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ExcelExportBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
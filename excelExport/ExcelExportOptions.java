@@ -0,0 +1,62 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.zip.Deflater;
+
+/**
+ * @description: Excel导出选项
+ */
+@Getter
+@Builder(toBuilder = true)
+public class ExcelExportOptions {
+
+    /**
+     * xlsx单个sheet的最大行数
+     */
+    public static final int XLSX_MAX_ROWS = 1048576;
+
+    /**
+     * 单个sheet的行数上限，超过后在单位组边界处切换到新的sheet
+     */
+    @Builder.Default
+    private final int maxRowsPerSheet = 1000000;
+
+    /**
+     * 每批写入的行数
+     */
+    @Builder.Default
+    private final int writeBatchSize = 1000;
+
+    /**
+     * SXSSF行窗口，内存中保留的行数，超出部分刷到临时文件；0表示使用EasyExcel默认值
+     */
+    @Builder.Default
+    private final int rowAccessWindowSize = 0;
+
+    /**
+     * SXSSF临时文件是否压缩，以CPU换磁盘与页缓存占用
+     */
+    @Builder.Default
+    private final boolean compressTempFiles = false;
+
+    /**
+     * 输出文件的zip压缩级别，取值同 {@link Deflater}，默认压缩级别时不替换工作簿
+     */
+    @Builder.Default
+    private final int deflateLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * 是否使用共享字符串表；重复字符串多时文件更小，但字符串表随不同字符串数增长且常驻内存
+     */
+    @Builder.Default
+    private final boolean useSharedStrings = false;
+
+    /**
+     * 默认选项
+     */
+    public static ExcelExportOptions defaults() {
+        return ExcelExportOptions.builder().build();
+    }
+}
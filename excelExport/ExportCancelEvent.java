@@ -0,0 +1,13 @@
+package com.qax.situation.asset.application.service.impl.excel.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @description: 取消导出事件，按任务ID取消排队中或执行中的导出
+ */
+@Getter
+@AllArgsConstructor
+public class ExportCancelEvent {
+    private final Object taskId;
+}
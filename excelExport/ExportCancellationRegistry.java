@@ -0,0 +1,84 @@
+package com.qax.situation.asset.application.service.impl.excel.cancel;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+
+/**
+ * @description: 在途导出任务的取消标记登记，按任务键（与在途合并使用的任务键相同）管理；
+ * 任务开始执行时启动超时计时，超时后按超时原因取消
+ */
+@Slf4j
+@Component
+public class ExportCancellationRegistry {
+
+    /**
+     * 单个导出任务从开始执行起的最长耗时，0表示不限制
+     */
+    @Value("${key-asset.export.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private final ConcurrentMap<String, ExportCancellationToken> tokens = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ScheduledFuture<?>> timeouts = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timeoutScheduler;
+
+    @PostConstruct
+    public void init() {
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "key-asset-export-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    /**
+     * 登记任务，返回其取消标记
+     */
+    public ExportCancellationToken register(String jobKey) {
+        return tokens.computeIfAbsent(jobKey, k -> new ExportCancellationToken());
+    }
+
+    /**
+     * 任务开始执行，启动超时计时；重复调用不重新计时
+     */
+    public void startTimer(String jobKey) {
+        ExportCancellationToken token = tokens.get(jobKey);
+        if (token == null || timeoutMs <= 0) {
+            return;
+        }
+        timeouts.computeIfAbsent(jobKey, k -> timeoutScheduler.schedule(() -> {
+            if (token.cancel(CancelReason.TIMED_OUT)) {
+                log.warn("导出任务超时，已取消，任务键：{}，超时时间：{}ms", jobKey, timeoutMs);
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 取消任务
+     * @return 任务存在且本次取消生效时返回true
+     */
+    public boolean cancel(String jobKey) {
+        ExportCancellationToken token = tokens.get(jobKey);
+        return token != null && token.cancel(CancelReason.CANCELLED);
+    }
+
+    /**
+     * 任务结束，移除取消标记并停止超时计时
+     */
+    public void unregister(String jobKey) {
+        tokens.remove(jobKey);
+        ScheduledFuture<?> timeout = timeouts.remove(jobKey);
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+}
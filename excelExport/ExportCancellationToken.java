@@ -0,0 +1,64 @@
+package com.qax.situation.asset.application.service.impl.excel.cancel;
+
+/**
+ * @description: 导出任务的协作式取消标记，由执行线程在页、单位组、上传分片之间检查；
+ * 取消时中断当前绑定的执行线程，使阻塞在队列、排队或IO上的执行线程立即返回
+ */
+public class ExportCancellationToken {
+
+    private volatile CancelReason reason;
+    private Thread owner;
+
+    /**
+     * 是否已取消或超时
+     */
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public CancelReason getReason() {
+        return reason;
+    }
+
+    /**
+     * 已取消或超时时抛出 {@link ExportCancelledException}
+     */
+    public void throwIfCancelled() {
+        CancelReason current = reason;
+        if (current != null) {
+            throw new ExportCancelledException(current);
+        }
+    }
+
+    /**
+     * 取消任务，只有第一次取消生效
+     * @return 本次调用是否生效
+     */
+    public synchronized boolean cancel(CancelReason cancelReason) {
+        if (reason != null) {
+            return false;
+        }
+        reason = cancelReason;
+        if (owner != null) {
+            owner.interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * 绑定当前线程为执行线程，任务在线程之间转交时重新绑定
+     */
+    public synchronized void bindCurrentThread() {
+        owner = Thread.currentThread();
+    }
+
+    /**
+     * 解绑执行线程，并清除取消时留下的中断标记，避免影响线程池中的下一个任务
+     */
+    public synchronized void unbindCurrentThread() {
+        if (owner == Thread.currentThread()) {
+            owner = null;
+            Thread.interrupted();
+        }
+    }
+}
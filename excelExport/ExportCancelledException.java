@@ -0,0 +1,17 @@
+package com.qax.situation.asset.application.service.impl.excel.cancel;
+
+import lombok.Getter;
+
+/**
+ * @description: 导出已被取消或超时
+ */
+@Getter
+public class ExportCancelledException extends RuntimeException {
+
+    private final CancelReason reason;
+
+    public ExportCancelledException(CancelReason reason) {
+        super(reason.getMessage());
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,65 @@
+package com.qax.situation.asset.application.service.impl.excel.checkpoint;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @description: 导出检查点，记录恢复任务所需的请求信息与已完成的进度
+ */
+@Data
+public class ExportCheckpoint {
+
+    /**
+     * 任务ID，同时作为检查点目录名
+     */
+    private String jobId;
+
+    /**
+     * 挂载在任务上的导出记录（JSON），第一个为发起任务的记录
+     */
+    private List<String> records = new ArrayList<>();
+
+    /**
+     * 查询条件（JSON）
+     */
+    private String query;
+
+    private String exportFormat;
+
+    private String exportMode;
+
+    /**
+     * 性能档位，为空时使用配置的默认档位
+     */
+    private String exportProfile;
+
+    private long createdAt;
+
+    private long updatedAt;
+
+    /**
+     * 数据流名称 -> 数据一致性标记（总数、分页大小与第1页内容摘要），恢复时不一致则丢弃该数据流已落盘的分页
+     */
+    private Map<String, String> streamMarkers = new TreeMap<>();
+
+    /**
+     * 数据流名称 -> 已落盘的页码
+     */
+    private Map<String, List<Integer>> spooledPages = new TreeMap<>();
+
+    /**
+     * 已写出的单位组数及最后一个写出的单位
+     */
+    private int unitsWritten;
+
+    private String lastUnitName;
+
+    /**
+     * 已恢复次数
+     */
+    private int resumeCount;
+}
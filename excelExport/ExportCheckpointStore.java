@@ -0,0 +1,185 @@
+package com.qax.situation.asset.application.service.impl.excel.checkpoint;
+
+import cn.hutool.json.JSONUtil;
+import com.qax.situation.asset.application.dto.request.DataPreCheckQuery;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportFormat;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportMode;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportProfile;
+import com.qax.situation.asset.infra.persistence.db.entity.KeyAssetExport;
+import com.qax.situation.asset.application.service.impl.excel.spill.ExportSpillManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @description: 导出检查点存储，每个任务一个本地目录，存放检查点文件与落盘的分页；
+ * 任务结束（成功、失败或取消）时删除，节点重启后仍存在的目录即为被中断的任务。
+ * 检查点目录位于导出落盘目录下，占用计入落盘配额，过期残留由落盘目录的后台回收清理
+ */
+@Slf4j
+@Component
+public class ExportCheckpointStore {
+
+    @Value("${key-asset.export.checkpoint.enabled:true}")
+    private boolean enabled;
+
+    @Resource
+    private ExportSpillManager exportSpillManager;
+
+    /**
+     * 检查点文件刷新间隔，分页落盘不受此限制
+     */
+    @Value("${key-asset.export.checkpoint.flush-interval-ms:10000}")
+    private long flushIntervalMs;
+
+    /**
+     * 超过该时长未更新的检查点不再恢复
+     */
+    @Value("${key-asset.export.checkpoint.max-age-ms:86400000}")
+    private long maxAgeMs;
+
+    /**
+     * 打开任务检查点，目录中已有检查点时在其基础上恢复
+     * @param jobId 任务ID
+     * @param records 挂载在任务上的导出记录
+     */
+    public JobCheckpoint open(String jobId, List<KeyAssetExport> records, DataPreCheckQuery query,
+                              ExportFormat format, ExportMode mode, ExportProfile profile) {
+        if (!enabled) {
+            return JobCheckpoint.disabled();
+        }
+        Path dir = jobDir(jobId);
+        ExportCheckpoint state = read(dir);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            log.warn("创建检查点目录失败，本次导出不记录检查点：{}", dir, e);
+            return JobCheckpoint.disabled();
+        }
+        if (state != null) {
+            log.info("从检查点恢复导出，任务ID: {}，第{}次恢复，中断前写到第{}个单位（{}）", jobId,
+                    state.getResumeCount() + 1, state.getUnitsWritten(), state.getLastUnitName());
+            state.setResumeCount(state.getResumeCount() + 1);
+            // 工作簿无法从中间续写，写出从头开始，已落盘的分页直接复用
+            state.setUnitsWritten(0);
+            state.setLastUnitName(null);
+        } else {
+            state = new ExportCheckpoint();
+            state.setJobId(jobId);
+            state.setQuery(JSONUtil.toJsonStr(query));
+            state.setExportFormat(format != null ? format.name() : ExportFormat.XLSX.name());
+            state.setExportMode(mode != null ? mode.name() : ExportMode.FULL.name());
+            state.setExportProfile(profile != null ? profile.name() : null);
+            state.setCreatedAt(System.currentTimeMillis());
+        }
+        JobCheckpoint checkpoint = new JobCheckpoint(dir, state, flushIntervalMs);
+        checkpoint.updateRecords(records);
+        checkpoint.flush();
+        return checkpoint;
+    }
+
+    /**
+     * 读取全部残留的检查点，即节点重启前被中断的任务
+     */
+    public List<ExportCheckpoint> loadAll() {
+        Path root = exportSpillManager.getCheckpointRoot();
+        if (!enabled || !Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+        List<ExportCheckpoint> checkpoints = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                ExportCheckpoint state = read(dir);
+                if (state != null) {
+                    checkpoints.add(state);
+                } else {
+                    deleteDir(dir);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取检查点目录失败：{}", root, e);
+        }
+        return checkpoints;
+    }
+
+    /**
+     * 检查点是否已过期
+     */
+    public boolean isExpired(ExportCheckpoint checkpoint) {
+        return System.currentTimeMillis() - checkpoint.getUpdatedAt() > maxAgeMs;
+    }
+
+    public List<KeyAssetExport> decodeRecords(ExportCheckpoint checkpoint) {
+        List<KeyAssetExport> records = new ArrayList<>();
+        for (String json : checkpoint.getRecords()) {
+            records.add(JSONUtil.toBean(json, KeyAssetExport.class));
+        }
+        return records;
+    }
+
+    public DataPreCheckQuery decodeQuery(ExportCheckpoint checkpoint) {
+        return JSONUtil.toBean(checkpoint.getQuery(), DataPreCheckQuery.class);
+    }
+
+    /**
+     * 删除任务检查点
+     */
+    public void delete(JobCheckpoint checkpoint) {
+        if (checkpoint.isEnabled()) {
+            deleteDir(checkpoint.getDir());
+        }
+    }
+
+    /**
+     * 删除任务检查点
+     */
+    public void delete(String jobId) {
+        deleteDir(jobDir(jobId));
+    }
+
+    private Path jobDir(String jobId) {
+        return exportSpillManager.getCheckpointRoot().resolve(jobId.replaceAll("[\\\\/:*?\"<>|]", "_"));
+    }
+
+    private static ExportCheckpoint read(Path dir) {
+        Path file = dir.resolve(JobCheckpoint.CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return JSONUtil.toBean(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), ExportCheckpoint.class);
+        } catch (Exception e) {
+            log.warn("读取检查点失败：{}", file, e);
+            return null;
+        }
+    }
+
+    private static void deleteDir(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除检查点文件失败：{}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("删除检查点目录失败：{}", dir, e);
+        }
+    }
+}
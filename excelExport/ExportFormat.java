@@ -0,0 +1,13 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+/**
+ * @description: 导出文件格式
+ * <pre>
+ * XLSX      带合并单元格和样式的工作簿
+ * CSV       扁平CSV，每个系统一行
+ * CSV_GZIP  gzip压缩的扁平CSV
+ * </pre>
+ */
+public enum ExportFormat {
+    XLSX, CSV, CSV_GZIP
+}
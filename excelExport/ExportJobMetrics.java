@@ -0,0 +1,249 @@
+package com.qax.situation.asset.application.service.impl.excel.metrics;
+
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * @description: 单次导出任务的阶段耗时、吞吐与进度，各阶段线程并发更新
+ * 进度按阶段分段估算：拉取0-40%，写出40-90%，上传90-100%；进度回调按固定间隔节流
+ */
+public class ExportJobMetrics {
+
+    private static final int FETCH_END_PERCENT = 40;
+    private static final int WRITE_END_PERCENT = 90;
+
+    private final Map<ExportPhase, LongAdder> phaseNanos = new EnumMap<>(ExportPhase.class);
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder mergedRegions = new LongAdder();
+    private final LongAdder styleCacheHits = new LongAdder();
+    private final LongAdder styleCacheMisses = new LongAdder();
+    private final AtomicInteger peakQueuedPages = new AtomicInteger();
+    private final AtomicInteger peakQueuedGroups = new AtomicInteger();
+    private final AtomicLong systemsFetched = new AtomicLong();
+    private final AtomicLong unitsWritten = new AtomicLong();
+    private volatile long totalSystems;
+    private volatile long totalUnits;
+    @Getter
+    private volatile ExportPhase currentPhase = ExportPhase.FETCH;
+    private volatile boolean completed;
+
+    private final long startNanos = System.nanoTime();
+    private final Consumer<ExportJobMetrics> progressReporter;
+    private final long reportIntervalNanos;
+    private final AtomicLong lastReportNanos = new AtomicLong();
+    private volatile int lastReportedKey = -1;
+
+    /**
+     * 不回调进度的任务指标
+     */
+    public ExportJobMetrics() {
+        this(null, 0);
+    }
+
+    /**
+     * @param progressReporter 进度回调，可为null
+     * @param reportIntervalMillis 进度回调的最小间隔
+     */
+    public ExportJobMetrics(Consumer<ExportJobMetrics> progressReporter, long reportIntervalMillis) {
+        for (ExportPhase phase : ExportPhase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+        }
+        this.progressReporter = progressReporter;
+        this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+    }
+
+    public void enterPhase(ExportPhase phase) {
+        currentPhase = phase;
+        maybeReport();
+    }
+
+    public void addPhaseNanos(ExportPhase phase, long nanos) {
+        phaseNanos.get(phase).add(nanos);
+    }
+
+    public long getPhaseNanos(ExportPhase phase) {
+        return phaseNanos.get(phase).sum();
+    }
+
+    public void setTotalSystems(long totalSystems) {
+        this.totalSystems = totalSystems;
+    }
+
+    public void setTotalUnits(long totalUnits) {
+        this.totalUnits = totalUnits;
+    }
+
+    public void addSystemsFetched(int count) {
+        systemsFetched.addAndGet(count);
+        maybeReport();
+    }
+
+    public void unitWritten() {
+        unitsWritten.incrementAndGet();
+        maybeReport();
+    }
+
+    public void addRowsWritten(int rows) {
+        rowsWritten.add(rows);
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * 累加写出批次中新增的合并区域数，每批次调用一次
+     */
+    public void addMergedRegions(int regions) {
+        mergedRegions.add(regions);
+    }
+
+    public long getMergedRegions() {
+        return mergedRegions.sum();
+    }
+
+    /**
+     * 累加写出批次中的样式缓存命中数，每批次调用一次
+     */
+    public void addStyleCacheHits(int hits) {
+        styleCacheHits.add(hits);
+    }
+
+    public long getStyleCacheHits() {
+        return styleCacheHits.sum();
+    }
+
+    /**
+     * 累加写出批次中的样式缓存未命中数，每批次调用一次
+     */
+    public void addStyleCacheMisses(int misses) {
+        styleCacheMisses.add(misses);
+    }
+
+    public long getStyleCacheMisses() {
+        return styleCacheMisses.sum();
+    }
+
+    /**
+     * 记录流水线分页队列的实际占用，在取出分页时采样
+     */
+    public void recordQueuedPages(int pages) {
+        peakQueuedPages.accumulateAndGet(pages, Math::max);
+    }
+
+    public int getPeakQueuedPages() {
+        return peakQueuedPages.get();
+    }
+
+    /**
+     * 记录流水线单位组队列的实际占用，在取出单位组时采样
+     */
+    public void recordQueuedGroups(int groups) {
+        peakQueuedGroups.accumulateAndGet(groups, Math::max);
+    }
+
+    public int getPeakQueuedGroups() {
+        return peakQueuedGroups.get();
+    }
+
+    /**
+     * 写出从头重新执行时清零拉取与写出进度，已累计的阶段耗时保留
+     */
+    public void restartWrite() {
+        systemsFetched.set(0);
+        unitsWritten.set(0);
+        rowsWritten.reset();
+        bytesWritten.reset();
+        mergedRegions.reset();
+        styleCacheHits.reset();
+        styleCacheMisses.reset();
+        currentPhase = ExportPhase.FETCH;
+    }
+
+    /**
+     * 写出阶段每秒行数
+     */
+    public double getRowsPerSecond() {
+        long writeNanos = getPhaseNanos(ExportPhase.WRITE);
+        return writeNanos == 0 ? 0 : getRowsWritten() * 1e9 / writeNanos;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 标记完成并立即回调一次进度
+     */
+    public void complete() {
+        completed = true;
+        report();
+    }
+
+    /**
+     * 估算的完成百分比
+     */
+    public int getProgressPercent() {
+        if (completed) {
+            return 100;
+        }
+        switch (currentPhase) {
+            case FETCH:
+            case BUILD:
+                return ratio(systemsFetched.get(), totalSystems, 0, FETCH_END_PERCENT);
+            case WRITE:
+                return ratio(unitsWritten.get(), totalUnits, FETCH_END_PERCENT, WRITE_END_PERCENT);
+            case UPLOAD:
+            default:
+                return WRITE_END_PERCENT;
+        }
+    }
+
+    private static int ratio(long done, long total, int from, int to) {
+        if (total <= 0) {
+            return from;
+        }
+        return from + (int) ((to - from) * Math.min(1.0, (double) done / total));
+    }
+
+    private void maybeReport() {
+        if (progressReporter == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastReportNanos.get();
+        if (now - last < reportIntervalNanos || !lastReportNanos.compareAndSet(last, now)) {
+            return;
+        }
+        report();
+    }
+
+    private void report() {
+        if (progressReporter == null) {
+            return;
+        }
+        // 阶段与百分比都未变化时不重复回调
+        int reportKey = (completed ? ExportPhase.values().length : currentPhase.ordinal()) * 1000 + getProgressPercent();
+        if (reportKey == lastReportedKey) {
+            return;
+        }
+        lastReportedKey = reportKey;
+        progressReporter.accept(this);
+    }
+}
@@ -0,0 +1,333 @@
+package com.qax.situation.asset.application.service.impl.excel.governor;
+
+import com.qax.situation.asset.application.service.impl.excel.util.ExcelExportOptions;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @description: 导出内存调控，按本节点在途导出的预估内存占用分配预算
+ * <pre>
+ * NORMAL   预算充足，默认写出批次与行窗口
+ * TIGHT    在途占用较高，缩小写出批次与行窗口，不做分片并行渲染
+ * MINIMAL  接近预算上限，最小批次与行窗口，SXSSF临时文件压缩
+ * </pre>
+ * 任务开始前按规模与实际使用的导出选项、关联方式、写出方式预估占用，选择能放进预算的最宽松模式，
+ * 最紧模式也放不下时排队等待其他任务释放，超时后拒绝；堆使用率已经偏高时不再选择NORMAL
+ */
+@Slf4j
+@Component
+public class ExportMemoryGovernor {
+
+    /**
+     * 内存模式
+     */
+    @Getter
+    public enum MemoryMode {
+        NORMAL(1000, 0, false, 0.5),
+        TIGHT(200, 50, false, 0.8),
+        MINIMAL(50, 20, true, 1.0);
+
+        private final int writeBatchSize;
+        private final int rowAccessWindowSize; // 0表示使用EasyExcel默认值
+        private final boolean compressTempFiles;
+        private final double budgetRatio; // 选择该模式时在途占用不超过预算的比例
+
+        MemoryMode(int writeBatchSize, int rowAccessWindowSize, boolean compressTempFiles, double budgetRatio) {
+            this.writeBatchSize = writeBatchSize;
+            this.rowAccessWindowSize = rowAccessWindowSize;
+            this.compressTempFiles = compressTempFiles;
+            this.budgetRatio = budgetRatio;
+        }
+
+        /**
+         * 按内存模式收紧导出选项：批次与行窗口取较小值，临时文件压缩只开不关，
+         * 非NORMAL模式下不使用随字符串数增长的共享字符串表
+         */
+        public ExcelExportOptions apply(ExcelExportOptions options) {
+            int window = options.getRowAccessWindowSize();
+            if (rowAccessWindowSize > 0 && (window <= 0 || window > rowAccessWindowSize)) {
+                window = rowAccessWindowSize;
+            }
+            return options.toBuilder()
+                    .writeBatchSize(Math.min(options.getWriteBatchSize(), writeBatchSize))
+                    .rowAccessWindowSize(window)
+                    .compressTempFiles(options.isCompressTempFiles() || compressTempFiles)
+                    .useSharedStrings(options.isUseSharedStrings() && this == NORMAL)
+                    .build();
+        }
+    }
+
+    /**
+     * 任务形态，预估内存所需的规模、选项及各阶段缓冲
+     */
+    @Getter
+    @Builder
+    public static class JobShape {
+
+        /**
+         * 预估系统数，未知时为Long.MAX_VALUE
+         */
+        private final long estimatedRows;
+
+        /**
+         * 导出选项，已应用性能档位、尚未按内存模式收紧
+         */
+        private final ExcelExportOptions options;
+
+        /**
+         * 流水线拉取在途与分页队列中最多缓冲的数据条数
+         */
+        private final long bufferedPageItems;
+
+        /**
+         * 流水线单位组队列容量
+         */
+        private final int bufferedGroups;
+
+        /**
+         * 是否HASH关联，全部系统与单位在组装前驻留内存
+         */
+        private final boolean hashJoin;
+
+        /**
+         * 是否分片并行渲染，只在NORMAL模式下分片
+         */
+        private final boolean sharded;
+
+        /**
+         * 分片时同时渲染的工作簿数
+         */
+        private final int shardParallelism;
+
+        /**
+         * 分片时是否先收齐全部单位组（FIRST_LEVEL_UNIT方式）
+         */
+        private final boolean materializedShards;
+
+        /**
+         * 分片时在途（渲染中及正在累积）的单位组数，materializedShards为true时不使用
+         */
+        private final long shardBufferedGroups;
+    }
+
+    /**
+     * EasyExcel默认的SXSSF行窗口
+     */
+    private static final int DEFAULT_ROW_ACCESS_WINDOW = 100;
+
+    /**
+     * 节点导出内存预算，0表示取最大堆的1/4
+     */
+    @Value("${key-asset.export.memory.budget-mb:0}")
+    private long budgetMb;
+
+    /**
+     * 单行预估占用（35列单元格及POI对象）
+     */
+    @Value("${key-asset.export.memory.bytes-per-row:4096}")
+    private long bytesPerRow;
+
+    /**
+     * 单位平均系统数，用于把缓冲的单位组换算为行数
+     */
+    @Value("${key-asset.export.memory.systems-per-unit:10}")
+    private long systemsPerUnit;
+
+    /**
+     * 使用共享字符串表时每行新增字符串的预估占用，按字符串全不重复估算
+     */
+    @Value("${key-asset.export.memory.shared-strings-bytes-per-row:1024}")
+    private long sharedStringsBytesPerRow;
+
+    /**
+     * 单个任务的固定开销（样式缓存、线程栈等）
+     */
+    @Value("${key-asset.export.memory.job-overhead-mb:16}")
+    private long jobOverheadMb;
+
+    /**
+     * 堆使用率高于该值时不选择NORMAL模式
+     */
+    @Value("${key-asset.export.memory.heap-pressure-ratio:0.85}")
+    private double heapPressureRatio;
+
+    /**
+     * 预算不足时的最长排队时间
+     */
+    @Value("${key-asset.export.memory.queue-timeout-ms:600000}")
+    private long queueTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long budgetBytes;
+    private long reservedBytes;
+    private int waitingJobs;
+
+    @PostConstruct
+    public void init() {
+        budgetBytes = budgetMb > 0 ? budgetMb * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 4;
+        log.info("导出内存预算：{}MB", budgetBytes / 1024 / 1024);
+    }
+
+    /**
+     * 为任务预留内存并选择内存模式，预算不足时阻塞排队
+     * @param shape 任务形态
+     * @throws RejectedExecutionException 排队超时
+     */
+    public Reservation acquire(JobShape shape) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        lock.lock();
+        try {
+            waitingJobs++;
+            try {
+                while (true) {
+                    MemoryMode mode = selectMode(shape);
+                    if (mode != null) {
+                        // 规模未知或超出预算时独占整个预算
+                        long bytes = Math.min(estimate(mode, shape), budgetBytes);
+                        reservedBytes += bytes;
+                        return new Reservation(mode, bytes);
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new RejectedExecutionException("导出内存预算不足，排队超时");
+                    }
+                    released.awaitNanos(remaining);
+                }
+            } finally {
+                waitingJobs--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 选择能放进预算的最宽松模式，没有在途任务时总能以MINIMAL模式放行，避免单个超大任务永远排队
+     */
+    private MemoryMode selectMode(JobShape shape) {
+        boolean heapPressure = heapUsageRatio() >= heapPressureRatio;
+        for (MemoryMode mode : MemoryMode.values()) {
+            if (mode == MemoryMode.NORMAL && heapPressure) {
+                continue;
+            }
+            if (estimate(mode, shape) <= budgetBytes * mode.getBudgetRatio() - reservedBytes) {
+                return mode;
+            }
+        }
+        return reservedBytes == 0 ? MemoryMode.MINIMAL : null;
+    }
+
+    /**
+     * 预估任务在指定模式下的内存，各项驻留行数均不超过系统总数
+     * <pre>
+     * 工作簿    每个工作簿的写出批次与行窗口（按模式收紧后的实际值）
+     * 流水线    拉取在途与分页队列中的数据、单位组队列中的系统
+     * HASH关联  全部系统及单位
+     * 分片      FIRST_LEVEL_UNIT收齐的全部单位组，或UNIT_COUNT在途分片的单位组
+     * 共享字符串 按每行字符串全不重复估算
+     * </pre>
+     * 另加固定开销；规模未知且需要全量驻留时返回Long.MAX_VALUE
+     */
+    private long estimate(MemoryMode mode, JobShape shape) {
+        ExcelExportOptions options = mode.apply(shape.getOptions());
+        boolean sharded = shape.isSharded() && mode == MemoryMode.NORMAL;
+        double total = shape.getEstimatedRows();
+        double perUnit = Math.max(1, systemsPerUnit);
+
+        int window = options.getRowAccessWindowSize() > 0 ? options.getRowAccessWindowSize() : DEFAULT_ROW_ACCESS_WINDOW;
+        double rows = Math.min(total, options.getWriteBatchSize() + window) * (sharded ? Math.max(1, shape.getShardParallelism()) : 1);
+        rows += Math.min(total, shape.getBufferedPageItems());
+        rows += Math.min(total, shape.getBufferedGroups() * perUnit);
+        if (shape.isHashJoin()) {
+            rows += total + total / perUnit;
+        }
+        if (sharded) {
+            rows += shape.isMaterializedShards() ? total : Math.min(total, shape.getShardBufferedGroups() * perUnit);
+        }
+        double bytes = rows * bytesPerRow + jobOverheadMb * 1024 * 1024;
+        if (options.isUseSharedStrings()) {
+            bytes += total * sharedStringsBytesPerRow;
+        }
+        return bytes >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) bytes;
+    }
+
+    private static double heapUsageRatio() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return heap.getMax() > 0 ? (double) heap.getUsed() / heap.getMax() : 0;
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            reservedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaitingJobs() {
+        lock.lock();
+        try {
+            return waitingJobs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 内存预留，任务结束时关闭以归还预算
+     */
+    public class Reservation implements AutoCloseable {
+
+        @Getter
+        private final MemoryMode mode;
+        private final long bytes;
+        private boolean closed;
+
+        private Reservation(MemoryMode mode, long bytes) {
+            this.mode = mode;
+            this.bytes = bytes;
+        }
+
+        /**
+         * 按内存模式收紧导出选项，与预估时使用的选项一致
+         */
+        public ExcelExportOptions apply(ExcelExportOptions options) {
+            return mode.apply(options);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.qax.situation.asset.application.service.impl.excel.metrics;
+
+import com.qax.situation.asset.application.service.impl.excel.executor.ExportTaskExecutor;
+import com.qax.situation.asset.application.service.impl.excel.governor.ExportMemoryGovernor;
+import com.qax.situation.asset.application.service.impl.excel.spill.ExportSpillManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @description: 导出指标，将单次任务的 {@link ExportJobMetrics} 汇总上报到Micrometer
+ * <pre>
+ * key_asset_export.phase          各阶段耗时，标签phase、result
+ * key_asset_export.duration       任务总耗时，标签result
+ * key_asset_export.rows           写出行数
+ * key_asset_export.bytes          写出字节数
+ * key_asset_export.rows_per_second 写出阶段每秒行数
+ * key_asset_export.merged_regions 添加的合并区域数，按写出批次累计
+ * key_asset_export.style_cache    样式缓存命中与未命中数，标签result为hit、miss，按写出批次累计
+ * key_asset_export.fetch.page     单页拉取耗时，标签stream、result
+ * key_asset_export.queued_pages   任务内流水线分页队列的峰值占用
+ * key_asset_export.queued_groups  任务内流水线单位组队列的峰值占用
+ * key_asset_export.executor.*     执行器各通道排队数、执行数、拒绝数
+ * key_asset_export.memory.*       导出内存预算、已预留字节数、排队任务数
+ * key_asset_export.spill.*        落盘目录配额、已占用字节数、排队任务数
+ * </pre>
+ */
+@Component
+public class ExportMetrics {
+
+    private static final String PREFIX = "key_asset_export";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ExportTaskExecutor exportTaskExecutor;
+
+    @Resource
+    private ExportMemoryGovernor exportMemoryGovernor;
+
+    @Resource
+    private ExportSpillManager exportSpillManager;
+
+    @Value("${key-asset.export.progress.report-interval-ms:5000}")
+    private long progressReportIntervalMs;
+
+    @PostConstruct
+    public void init() {
+        for (ExportTaskExecutor.ExportLane lane : ExportTaskExecutor.ExportLane.values()) {
+            String laneTag = lane.name().toLowerCase();
+            Gauge.builder(PREFIX + ".executor.queue_depth", exportTaskExecutor, e -> e.getQueueDepth(lane))
+                    .tag("lane", laneTag)
+                    .register(meterRegistry);
+            Gauge.builder(PREFIX + ".executor.active", exportTaskExecutor, e -> e.getActiveCount(lane))
+                    .tag("lane", laneTag)
+                    .register(meterRegistry);
+            Gauge.builder(PREFIX + ".executor.rejected", exportTaskExecutor, e -> e.getRejectedCount(lane))
+                    .tag("lane", laneTag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder(PREFIX + ".memory.budget_bytes", exportMemoryGovernor, ExportMemoryGovernor::getBudgetBytes)
+                .register(meterRegistry);
+        Gauge.builder(PREFIX + ".memory.reserved_bytes", exportMemoryGovernor, ExportMemoryGovernor::getReservedBytes)
+                .register(meterRegistry);
+        Gauge.builder(PREFIX + ".memory.waiting_jobs", exportMemoryGovernor, ExportMemoryGovernor::getWaitingJobs)
+                .register(meterRegistry);
+        Gauge.builder(PREFIX + ".spill.quota_bytes", exportSpillManager, ExportSpillManager::getQuotaBytes)
+                .register(meterRegistry);
+        Gauge.builder(PREFIX + ".spill.used_bytes", exportSpillManager, ExportSpillManager::getUsedBytes)
+                .register(meterRegistry);
+        Gauge.builder(PREFIX + ".spill.waiting_jobs", exportSpillManager, ExportSpillManager::getWaitingJobs)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录单页拉取耗时，拉取线程逐页调用
+     * @param stream 数据名称
+     * @param success 是否拉取成功
+     */
+    public void recordPageFetch(String stream, long nanos, boolean success) {
+        Timer.builder(PREFIX + ".fetch.page")
+                .tag("stream", stream)
+                .tag("result", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 创建单次任务指标
+     * @param progressReporter 进度回调，按配置的间隔节流
+     */
+    public ExportJobMetrics newJob(Consumer<ExportJobMetrics> progressReporter) {
+        return new ExportJobMetrics(progressReporter, progressReportIntervalMs);
+    }
+
+    /**
+     * 任务结束时上报
+     * @param job 任务指标
+     * @param success 是否成功
+     */
+    public void record(ExportJobMetrics job, boolean success) {
+        String result = success ? "success" : "failure";
+        for (ExportPhase phase : ExportPhase.values()) {
+            long nanos = job.getPhaseNanos(phase);
+            if (nanos > 0) {
+                Timer.builder(PREFIX + ".phase")
+                        .tag("phase", phase.getTag())
+                        .tag("result", result)
+                        .register(meterRegistry)
+                        .record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        Timer.builder(PREFIX + ".duration")
+                .tag("result", result)
+                .register(meterRegistry)
+                .record(job.getElapsedNanos(), TimeUnit.NANOSECONDS);
+        Counter.builder(PREFIX + ".rows").register(meterRegistry).increment(job.getRowsWritten());
+        Counter.builder(PREFIX + ".bytes").baseUnit("bytes").register(meterRegistry).increment(job.getBytesWritten());
+        Counter.builder(PREFIX + ".merged_regions").register(meterRegistry).increment(job.getMergedRegions());
+        Counter.builder(PREFIX + ".style_cache").tag("result", "hit").register(meterRegistry).increment(job.getStyleCacheHits());
+        Counter.builder(PREFIX + ".style_cache").tag("result", "miss").register(meterRegistry).increment(job.getStyleCacheMisses());
+        if (success) {
+            DistributionSummary.builder(PREFIX + ".rows_per_second").register(meterRegistry).record(job.getRowsPerSecond());
+        }
+        DistributionSummary.builder(PREFIX + ".queued_pages").register(meterRegistry).record(job.getPeakQueuedPages());
+        DistributionSummary.builder(PREFIX + ".queued_groups").register(meterRegistry).record(job.getPeakQueuedGroups());
+    }
+}
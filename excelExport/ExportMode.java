@@ -0,0 +1,12 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+/**
+ * @description: 导出模式
+ * <pre>
+ * FULL   全量导出
+ * DELTA  增量导出，只导出自同一查询范围上次成功导出以来新增或变化的单位
+ * </pre>
+ */
+public enum ExportMode {
+    FULL, DELTA
+}
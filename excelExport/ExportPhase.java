@@ -0,0 +1,26 @@
+package com.qax.situation.asset.application.service.impl.excel.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @description: 导出阶段；合并单元格与设置样式在写出过程中逐单元格进行，计入写出阶段，不单独计时，只按批次计数
+ */
+@Getter
+@AllArgsConstructor
+public enum ExportPhase {
+    FETCH("fetch", "拉取数据"),
+    BUILD("build", "组装数据"),
+    WRITE("write", "写出文件"),
+    UPLOAD("upload", "上传文件");
+
+    /**
+     * 指标标签值
+     */
+    private final String tag;
+
+    /**
+     * 展示名称
+     */
+    private final String displayName;
+}
@@ -0,0 +1,537 @@
+package com.qax.situation.asset.application.service.impl.excel.pipeline;
+
+import com.qax.dayu.asset.sdk.model.dto.OrganizationRelDto;
+import com.qax.dayu.asset.sdk.model.dto.SystemRelDto;
+import com.qax.situation.asset.application.dto.excel.export.SystemInfoDto;
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.executor.ExportTaskExecutor;
+import com.qax.situation.asset.application.service.impl.excel.fetch.AssetPageFetcher;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportJobMetrics;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportPhase;
+import com.qax.situation.asset.application.service.impl.excel.util.ExcelExportOptions;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * @description: 导出流水线，拉取、转换、写出三个阶段并行执行，阶段之间通过有界队列衔接
+ * <pre>
+ * 拉取：单位分页与系统分页并发拉取，按页码顺序放入各自的有界队列
+ * 转换：按单位ID归并两路数据，每个单位的系统收齐即组装UnitGroupDto放入有界队列
+ * 写出：调用线程从队列中取单位组交给 {@link ExportWriter}，按批次写入ExcelWriter
+ * </pre>
+ * 队列满时上游阶段阻塞，队列容量决定了各阶段之间最多缓冲的数据量，写出与拉取重叠进行；
+ * 资产SDK不按单位ID排序时改用 {@link JoinMode#HASH}，此时全部系统归集到内存后才开始写出
+ */
+@Slf4j
+@Component
+public class ExportPipeline {
+
+    /**
+     * 队列结束标记
+     */
+    private static final Object END = new Object();
+
+    @Value("${key-asset.export.pipeline.page-queue-capacity:4}")
+    private int pageQueueCapacity;
+
+    @Value("${key-asset.export.pipeline.group-queue-capacity:256}")
+    private int groupQueueCapacity;
+
+    /**
+     * 单位与系统的关联方式
+     * <pre>
+     * MERGE  单位按单位ID、系统按所属单位ID升序返回时边拉取边归并，每个单位的系统收齐即组装，
+     *        内存只取决于最大单个单位的系统数；数据未按要求排序时抛出 {@link UnorderedInputException}，
+     *        由调用方改用HASH重新执行，本节点之后的任务也改用HASH
+     * HASH   全部系统按单位ID归集到内存后逐个组装单位组，不要求数据有序，
+     *        写出要等拉取全部完成才开始，内存随系统总数增长
+     * </pre>
+     */
+    public enum JoinMode {
+        HASH, MERGE
+    }
+
+    /**
+     * 关联方式，默认HASH：资产SDK的分页查询条件不支持指定排序，只有确认SDK按上述顺序返回时才可配置MERGE
+     */
+    @Value("${key-asset.export.pipeline.join-mode:HASH}")
+    private JoinMode joinMode;
+
+    /**
+     * MERGE关联时单位ID的排序方式，需与资产SDK的排序方式一致
+     * <pre>
+     * STRING   按字符串字典序
+     * NUMERIC  均为不含前导零的数字时按数值比较，否则按字典序，用于按数值类型主键排序的SDK
+     * </pre>
+     */
+    public enum IdOrder {
+        STRING, NUMERIC
+    }
+
+    @Value("${key-asset.export.pipeline.id-order:STRING}")
+    private IdOrder idOrder;
+
+    /**
+     * 是否已发现资产SDK返回的数据未按单位ID排序
+     */
+    private volatile boolean unorderedInputSeen;
+
+    @Resource
+    private AssetPageFetcher assetPageFetcher;
+
+    @Resource
+    private ExportTaskExecutor exportTaskExecutor;
+
+    private ExecutorService stageExecutor;
+
+    @PostConstruct
+    public void init() {
+        // 阶段线程主要阻塞在分页拉取与队列上，与拉取线程一样可使用虚拟线程
+        stageExecutor = Executors.newCachedThreadPool(exportTaskExecutor.fetchThreadFactory("export-pipeline-"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stageExecutor.shutdownNow();
+    }
+
+    /**
+     * 当前生效的关联方式
+     */
+    public JoinMode getEffectiveJoinMode() {
+        return joinMode == JoinMode.MERGE && !unorderedInputSeen ? JoinMode.MERGE : JoinMode.HASH;
+    }
+
+    /**
+     * 拉取在途与分页队列中最多缓冲的数据条数，用于预估内存：每路拉取最多在途（含按序暂存）并发数个分页，
+     * 另有分页队列容量个分页在队列中；MERGE时单位与系统各一路，HASH时单位全量拉取不计入
+     */
+    public long getBufferedPageItems() {
+        int streams = getEffectiveJoinMode() == JoinMode.MERGE ? 2 : 1;
+        return (long) streams * (Math.max(1, pageQueueCapacity) + assetPageFetcher.getConcurrency())
+                * assetPageFetcher.getPageSize();
+    }
+
+    public int getGroupQueueCapacity() {
+        return Math.max(1, groupQueueCapacity);
+    }
+
+    /**
+     * 执行流水线并写出到文件
+     * @param fileName 文件名（不含扩展名）
+     * @param orgQuery 单位分页查询
+     * @param sysQuery 系统分页查询
+     * @param systemConverter 系统数据转换
+     * @param groupBuilder 单位组组装，入参为单位及其系统清单
+     * @param writer 写出方式
+     * @param target 目标文件
+     * @param options 导出选项
+     * @param metrics 任务指标
+     * @return 写出的单位组数
+     */
+    public int run(String fileName,
+                   AssetPageFetcher.PageQuery<OrganizationRelDto> orgQuery,
+                   AssetPageFetcher.PageQuery<SystemRelDto> sysQuery,
+                   Function<SystemRelDto, SystemInfoDto> systemConverter,
+                   BiFunction<OrganizationRelDto, List<SystemInfoDto>, UnitGroupDto> groupBuilder,
+                   ExportWriter writer,
+                   Path target,
+                   ExcelExportOptions options,
+                   ExportJobMetrics metrics) throws IOException {
+        BlockingQueue<Object> pageQueue = new ArrayBlockingQueue<>(Math.max(1, pageQueueCapacity));
+        BlockingQueue<Object> groupQueue = new ArrayBlockingQueue<>(Math.max(1, groupQueueCapacity));
+        List<Future<?>> stages = new ArrayList<>();
+        AtomicInteger groupCount = new AtomicInteger();
+        AtomicBoolean unordered = new AtomicBoolean();
+
+        try {
+            // 阶段1：拉取
+            metrics.enterPhase(ExportPhase.FETCH);
+            if (getEffectiveJoinMode() == JoinMode.MERGE) {
+                BlockingQueue<Object> orgPageQueue = new ArrayBlockingQueue<>(Math.max(1, pageQueueCapacity));
+                stages.add(stageExecutor.submit(() -> fetchPages("单位", orgQuery, orgPageQueue, true,
+                        metrics::setTotalUnits)));
+                stages.add(stageExecutor.submit(() -> fetchPages("系统", sysQuery, pageQueue, true,
+                        total -> { })));
+
+                // 阶段2：按单位ID归并，每个单位的系统收齐即组装
+                stages.add(stageExecutor.submit(() -> {
+                    try {
+                        mergeJoin(new PageItemIterator<>(orgPageQueue, metrics, size -> { }),
+                                new PageItemIterator<>(pageQueue, metrics, metrics::addSystemsFetched),
+                                systemConverter, groupBuilder, groupQueue, groupCount, metrics);
+                        groupQueue.put(END);
+                    } catch (UnorderedInputException e) {
+                        unordered.set(true);
+                        if (!unorderedInputSeen) {
+                            unorderedInputSeen = true;
+                            log.error("资产SDK返回的数据未按单位ID排序，本次及本节点之后的导出改用HASH关联，"
+                                    + "请按SDK的排序方式配置key-asset.export.pipeline.id-order，"
+                                    + "或配置key-asset.export.pipeline.join-mode=HASH：{}", e.getMessage());
+                        }
+                        offerFailure(groupQueue, e);
+                    } catch (Throwable e) {
+                        offerFailure(groupQueue, e);
+                    }
+                    return null;
+                }));
+            } else {
+                long fetchStartNanos = System.nanoTime();
+                Future<List<OrganizationRelDto>> orgFuture = stageExecutor.submit(() -> assetPageFetcher.fetchAll("单位", orgQuery));
+                stages.add(orgFuture);
+                stages.add(stageExecutor.submit(() -> fetchPages("系统", sysQuery, pageQueue, false, total -> { })));
+
+                // 阶段2：转换与组装
+                stages.add(stageExecutor.submit(() -> {
+                    try {
+                        hashJoin(orgFuture, fetchStartNanos, pageQueue, systemConverter, groupBuilder,
+                                groupQueue, groupCount, metrics);
+                        groupQueue.put(END);
+                    } catch (Throwable e) {
+                        offerFailure(groupQueue, e);
+                    }
+                    return null;
+                }));
+            }
+
+            // 阶段3：写出；归并发现数据乱序时写出因上游失败而中断，统一抛出乱序异常以便调用方改用HASH重新执行
+            try {
+                writer.write(fileName, new QueueIterator(groupQueue, metrics), target, options, metrics);
+            } catch (IOException | RuntimeException e) {
+                if (unordered.get()) {
+                    throw new UnorderedInputException("资产SDK返回的数据未按单位ID排序，归并关联中断", e);
+                }
+                throw e;
+            }
+            log.info("导出流水线完成，文件名：{}，共{}个单位", fileName, groupCount.get());
+            return groupCount.get();
+        } finally {
+            stages.forEach(stage -> stage.cancel(true));
+        }
+    }
+
+    /**
+     * 拉取全部分页放入队列，结束时放入结束标记，失败时向下游传递异常
+     * @param ordered 是否按页码顺序放入
+     * @param totalConsumer 拉取完成后接收数据总条数
+     */
+    private <T> Void fetchPages(String name, AssetPageFetcher.PageQuery<T> query, BlockingQueue<Object> queue,
+                                boolean ordered, LongConsumer totalConsumer) {
+        try {
+            AssetPageFetcher.PageConsumer<T> consumer = (pageNo, items) -> queue.put(items);
+            long total = ordered ? assetPageFetcher.forEachPageInOrder(name, query, consumer)
+                    : assetPageFetcher.forEachPage(name, query, consumer);
+            totalConsumer.accept(total);
+            queue.put(END);
+        } catch (Throwable e) {
+            offerFailure(queue, e);
+        }
+        return null;
+    }
+
+    /**
+     * 全部系统按单位ID归集后，按单位顺序组装单位组；内存随系统总数增长
+     */
+    private static void hashJoin(Future<List<OrganizationRelDto>> orgFuture, long fetchStartNanos,
+                                 BlockingQueue<Object> pageQueue,
+                                 Function<SystemRelDto, SystemInfoDto> systemConverter,
+                                 BiFunction<OrganizationRelDto, List<SystemInfoDto>, UnitGroupDto> groupBuilder,
+                                 BlockingQueue<Object> groupQueue, AtomicInteger groupCount,
+                                 ExportJobMetrics metrics) throws Exception {
+        Map<String, List<SystemInfoDto>> systemsByOrgId = new HashMap<>();
+        for (Object page = takePage(pageQueue, metrics); page != END; page = takePage(pageQueue, metrics)) {
+            rethrowIfFailure(page);
+            List<SystemRelDto> systems = castPage(page);
+            metrics.addSystemsFetched(systems.size());
+            long startNanos = System.nanoTime();
+            convertPage(systems, systemConverter, systemsByOrgId);
+            metrics.addPhaseNanos(ExportPhase.BUILD, System.nanoTime() - startNanos);
+        }
+        List<OrganizationRelDto> orgs = orgFuture.get();
+        metrics.addPhaseNanos(ExportPhase.FETCH, System.nanoTime() - fetchStartNanos);
+        metrics.setTotalUnits(orgs.size());
+        metrics.enterPhase(ExportPhase.WRITE);
+        for (OrganizationRelDto org : orgs) {
+            long startNanos = System.nanoTime();
+            List<SystemInfoDto> systems = systemsByOrgId.remove(org.getId());
+            UnitGroupDto group = groupBuilder.apply(org, systems != null ? systems : new ArrayList<>());
+            metrics.addPhaseNanos(ExportPhase.BUILD, System.nanoTime() - startNanos);
+            groupQueue.put(group);
+            groupCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 单位按ID有序、系统按所属单位ID有序时逐个归并：跳过没有对应单位的系统，收齐当前单位的系统后立即组装，
+     * 没有系统的单位以空清单组装；同时只持有一个单位的系统，发现乱序时失败
+     */
+    private void mergeJoin(PageItemIterator<OrganizationRelDto> orgs, PageItemIterator<SystemRelDto> systems,
+                           Function<SystemRelDto, SystemInfoDto> systemConverter,
+                           BiFunction<OrganizationRelDto, List<SystemInfoDto>, UnitGroupDto> groupBuilder,
+                           BlockingQueue<Object> groupQueue, AtomicInteger groupCount,
+                           ExportJobMetrics metrics) throws InterruptedException {
+        long fetchStartNanos = System.nanoTime();
+        String previousOrgId = null;
+        String previousSystemOrgId = null;
+        long skippedSystems = 0;
+        while (orgs.hasNext()) {
+            OrganizationRelDto org = orgs.next();
+            String orgId = org.getId();
+            if (orgId == null || (previousOrgId != null && compareIds(previousOrgId, orgId) >= 0)) {
+                throw new UnorderedInputException("单位数据未按单位ID升序排列：" + previousOrgId + " -> " + orgId);
+            }
+            previousOrgId = orgId;
+
+            long startNanos = System.nanoTime();
+            List<SystemInfoDto> unitSystems = new ArrayList<>();
+            while (systems.hasNext()) {
+                String systemOrgId = organizationId(systems.peek());
+                if (systemOrgId == null) {
+                    systems.next();
+                    skippedSystems++;
+                    continue;
+                }
+                if (previousSystemOrgId != null && compareIds(previousSystemOrgId, systemOrgId) > 0) {
+                    throw new UnorderedInputException("系统数据未按所属单位ID升序排列：" + previousSystemOrgId + " -> " + systemOrgId);
+                }
+                int cmp = compareIds(systemOrgId, orgId);
+                if (cmp > 0) {
+                    break;
+                }
+                previousSystemOrgId = systemOrgId;
+                SystemRelDto system = systems.next();
+                if (cmp == 0) {
+                    unitSystems.add(systemConverter.apply(system));
+                } else {
+                    // 所属单位不在本次单位结果中，与HASH方式一致不导出
+                    skippedSystems++;
+                }
+            }
+            UnitGroupDto group = groupBuilder.apply(org, unitSystems);
+            metrics.addPhaseNanos(ExportPhase.BUILD, System.nanoTime() - startNanos);
+            if (groupCount.get() == 0) {
+                metrics.enterPhase(ExportPhase.WRITE);
+            }
+            groupQueue.put(group);
+            groupCount.incrementAndGet();
+        }
+        // 剩余系统没有对应单位，读完以便拉取阶段正常结束
+        while (systems.hasNext()) {
+            systems.next();
+            skippedSystems++;
+        }
+        metrics.addPhaseNanos(ExportPhase.FETCH, System.nanoTime() - fetchStartNanos);
+        if (skippedSystems > 0) {
+            log.info("归并关联跳过{}个没有对应单位的系统", skippedSystems);
+        }
+    }
+
+    /**
+     * 取出一个分页，取出前采样分页队列的实际占用
+     */
+    private static Object takePage(BlockingQueue<Object> pageQueue, ExportJobMetrics metrics) throws InterruptedException {
+        metrics.recordQueuedPages(pageQueue.size());
+        return pageQueue.take();
+    }
+
+    private static String organizationId(SystemRelDto system) {
+        return system.getOrganization() == null ? null : system.getOrganization().getId();
+    }
+
+    /**
+     * 按配置的排序方式比较单位ID
+     */
+    private int compareIds(String a, String b) {
+        if (idOrder == IdOrder.NUMERIC && isDigits(a) && isDigits(b)) {
+            return a.length() != b.length() ? Integer.compare(a.length(), b.length()) : a.compareTo(b);
+        }
+        return a.compareTo(b);
+    }
+
+    private static boolean isDigits(String id) {
+        if (id.isEmpty() || (id.length() > 1 && id.charAt(0) == '0')) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void convertPage(List<SystemRelDto> page, Function<SystemRelDto, SystemInfoDto> systemConverter,
+                                    Map<String, List<SystemInfoDto>> systemsByOrgId) {
+        for (SystemRelDto system : page) {
+            if (system.getOrganization() == null || system.getOrganization().getId() == null) {
+                continue;
+            }
+            systemsByOrgId.computeIfAbsent(system.getOrganization().getId(), id -> new ArrayList<>())
+                    .add(systemConverter.apply(system));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<SystemRelDto> castPage(Object page) {
+        return (List<SystemRelDto>) page;
+    }
+
+    /**
+     * 上游阶段失败时向下游传递异常，队列已满时丢弃缓冲数据以保证异常能送达
+     */
+    private static void offerFailure(BlockingQueue<Object> queue, Throwable e) {
+        StageFailure failure = new StageFailure(e);
+        while (!queue.offer(failure)) {
+            queue.poll();
+        }
+    }
+
+    private static void rethrowIfFailure(Object element) {
+        if (element instanceof StageFailure) {
+            Throwable cause = ((StageFailure) element).cause;
+            throw new IllegalStateException("导出流水线上游阶段失败：" + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 归并关联时输入数据未按单位ID排序，抛出时本节点已切换为HASH关联，调用方可重新执行
+     */
+    public static class UnorderedInputException extends IllegalStateException {
+        UnorderedInputException(String message) {
+            super(message);
+        }
+
+        UnorderedInputException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static class StageFailure {
+        private final Throwable cause;
+
+        StageFailure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * 将队列中的分页展开为逐条数据的迭代器，支持查看下一条而不取出；hasNext在上游尚未产出时阻塞等待
+     */
+    private static class PageItemIterator<T> implements Iterator<T> {
+
+        private final BlockingQueue<Object> queue;
+        private final ExportJobMetrics metrics;
+        private final IntConsumer pageListener;
+        private Iterator<T> page = Collections.emptyIterator();
+        private T next;
+        private boolean ended;
+
+        /**
+         * @param pageListener 每取出一页时回调该页条数
+         */
+        PageItemIterator(BlockingQueue<Object> queue, ExportJobMetrics metrics, IntConsumer pageListener) {
+            this.queue = queue;
+            this.metrics = metrics;
+            this.pageListener = pageListener;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while (next == null && !ended) {
+                if (page.hasNext()) {
+                    next = page.next();
+                    continue;
+                }
+                Object element;
+                try {
+                    element = takePage(queue, metrics);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("等待分页数据被中断", e);
+                }
+                rethrowIfFailure(element);
+                if (element == END) {
+                    ended = true;
+                } else {
+                    List<T> items = (List<T>) element;
+                    pageListener.accept(items.size());
+                    page = items.iterator();
+                }
+            }
+            return next != null;
+        }
+
+        T peek() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return next;
+        }
+
+        @Override
+        public T next() {
+            T item = peek();
+            next = null;
+            return item;
+        }
+    }
+
+    /**
+     * 基于阻塞队列的单位组迭代器，hasNext在上游尚未产出时阻塞等待
+     */
+    private static class QueueIterator implements Iterator<UnitGroupDto> {
+
+        private final BlockingQueue<Object> queue;
+        private final ExportJobMetrics metrics;
+        private Object next;
+
+        QueueIterator(BlockingQueue<Object> queue, ExportJobMetrics metrics) {
+            this.queue = queue;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    metrics.recordQueuedGroups(queue.size());
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("等待单位组数据被中断", e);
+                }
+                rethrowIfFailure(next);
+            }
+            return next != END;
+        }
+
+        @Override
+        public UnitGroupDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            UnitGroupDto group = (UnitGroupDto) next;
+            next = null;
+            metrics.unitWritten();
+            return group;
+        }
+    }
+}
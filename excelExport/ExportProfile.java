@@ -0,0 +1,45 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+import lombok.Getter;
+
+import java.util.zip.Deflater;
+
+/**
+ * @description: 导出性能档位，按导出选择，以CPU、内存与文件大小相互取舍
+ * <pre>
+ * FASTEST   最低压缩级别，内联字符串，临时文件不压缩，行窗口放大，吞吐最高、文件最大
+ * BALANCED  默认压缩级别，内联字符串，临时文件不压缩，默认行窗口，与未指定档位时一致
+ * SMALLEST  最高压缩级别，共享字符串表去重，临时文件压缩，文件最小、CPU与字符串表内存开销最大
+ * </pre>
+ * 档位不影响内容，但产出的文件大小与编码不同，因此参与在途任务合并的任务键
+ */
+@Getter
+public enum ExportProfile {
+    FASTEST(Deflater.BEST_SPEED, false, false, 500),
+    BALANCED(Deflater.DEFAULT_COMPRESSION, false, false, 0),
+    SMALLEST(Deflater.BEST_COMPRESSION, true, true, 0);
+
+    private final int deflateLevel;
+    private final boolean useSharedStrings;
+    private final boolean compressTempFiles;
+    private final int rowAccessWindowSize; // 0表示使用EasyExcel默认值
+
+    ExportProfile(int deflateLevel, boolean useSharedStrings, boolean compressTempFiles, int rowAccessWindowSize) {
+        this.deflateLevel = deflateLevel;
+        this.useSharedStrings = useSharedStrings;
+        this.compressTempFiles = compressTempFiles;
+        this.rowAccessWindowSize = rowAccessWindowSize;
+    }
+
+    /**
+     * 将档位叠加到导出选项上，内存调控在此之后再按内存模式收紧
+     */
+    public ExcelExportOptions apply(ExcelExportOptions options) {
+        return options.toBuilder()
+                .deflateLevel(deflateLevel)
+                .useSharedStrings(useSharedStrings)
+                .compressTempFiles(options.isCompressTempFiles() || compressTempFiles)
+                .rowAccessWindowSize(rowAccessWindowSize > 0 ? rowAccessWindowSize : options.getRowAccessWindowSize())
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.qax.situation.asset.application.service.impl.excel.benchmark;
+
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.util.ComplexExcelExportUtil;
+import com.qax.situation.asset.application.service.impl.excel.util.ExcelExportOptions;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportProfile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @description: 导出性能档位JMH基准测试
+ * 按档位、系统总数、字符串基数参数化完整导出，吞吐量与GC分配速率由JMH输出，
+ * 文件大小在每组参数结束时打印，用于对比各档位的吞吐与文件大小取舍
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExportProfileBenchmark {
+
+    /**
+     * 性能档位
+     */
+    @Param({"FASTEST", "BALANCED", "SMALLEST"})
+    public ExportProfile profile;
+
+    /**
+     * 系统总数
+     */
+    @Param({"10000", "100000"})
+    public int totalSystems;
+
+    /**
+     * 字符串字段的不同取值个数，低基数时共享字符串表去重效果明显
+     */
+    @Param({"16", "100000"})
+    public int stringCardinality;
+
+    private static final int SYSTEMS_PER_UNIT = 10;
+
+    private List<UnitGroupDto> unitGroups;
+    private ExcelExportOptions options;
+    private volatile int lastSize;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int unitCount = Math.max(1, totalSystems / SYSTEMS_PER_UNIT);
+        unitGroups = new SyntheticUnitGroupGenerator(stringCardinality, 42L).generate(unitCount, SYSTEMS_PER_UNIT);
+        options = profile.apply(ExcelExportOptions.defaults());
+    }
+
+    @TearDown(Level.Trial)
+    public void reportSize() {
+        System.out.printf("%n档位：%s，系统总数：%d，字符串基数：%d，文件大小：%d 字节%n",
+                profile, totalSystems, stringCardinality, lastSize);
+    }
+
+    /**
+     * 按档位完整导出
+     */
+    @Benchmark
+    public byte[] exportWithProfile() throws IOException {
+        byte[] bytes = ComplexExcelExportUtil.exportComplexExcelToBytes("benchmark", unitGroups, options);
+        lastSize = bytes.length;
+        return bytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ExportProfileBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
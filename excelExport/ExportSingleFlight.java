@@ -0,0 +1,149 @@
+package com.qax.situation.asset.application.service.impl.excel.cache;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import com.qax.situation.asset.application.dto.request.DataPreCheckQuery;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportFormat;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportMode;
+import com.qax.situation.asset.application.service.impl.excel.util.ExportProfile;
+import com.qax.situation.asset.infra.persistence.db.entity.KeyAssetExport;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * @description: 相同导出请求的在途合并，同一任务键同时只执行一个导出任务，
+ * 后到的请求挂到正在执行的任务上，任务结束时所有挂载的导出记录一起完成；
+ * 只合并同时在途的请求，任务结束后相同请求重新导出，不复用已上传的文件
+ */
+@Component
+public class ExportSingleFlight {
+
+    /**
+     * 任务键 -> 挂载在该任务上的导出记录（第一个为发起任务的记录）
+     */
+    private final ConcurrentMap<String, List<KeyAssetExport>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 计算任务键：规范化查询条件哈希 + 导出格式 + 导出模式 + 性能档位，
+     * 四者都相同的请求产出相同的文件，才合并到同一任务
+     * @param profile 实际生效的性能档位，未指定时应传入默认档位
+     */
+    public static String key(DataPreCheckQuery query, ExportFormat format, ExportMode mode, ExportProfile profile) {
+        return normalizedHash(query) + ":" + format + ":" + mode + ":" + profile;
+    }
+
+    /**
+     * 规范化查询条件：忽略空值字段，按字段名排序，集合元素排序后再计算SHA-256
+     */
+    public static String normalizedHash(DataPreCheckQuery query) {
+        Map<String, Object> fields = new TreeMap<>();
+        BeanUtil.beanToMap(query, false, true).forEach((name, value) -> fields.put(name, normalizeValue(value)));
+        return SecureUtil.sha256(JSONUtil.toJsonStr(fields));
+    }
+
+    private static Object normalizeValue(Object value) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).stream()
+                    .map(String::valueOf)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        return value;
+    }
+
+    /**
+     * 尝试发起任务
+     * @param key 任务键
+     * @param keyAssetExport 导出记录
+     * @return true表示由当前请求执行导出；false表示已挂到在途任务上，无需再执行
+     */
+    public boolean tryLead(String key, KeyAssetExport keyAssetExport) {
+        boolean[] leader = {false};
+        inFlight.compute(key, (k, attached) -> {
+            if (attached == null) {
+                leader[0] = true;
+                attached = new ArrayList<>();
+            }
+            attached.add(keyAssetExport);
+            return attached;
+        });
+        return leader[0];
+    }
+
+    /**
+     * 当前挂载在任务上的导出记录快照
+     */
+    public List<KeyAssetExport> attached(String key) {
+        List<KeyAssetExport> snapshot = new ArrayList<>();
+        inFlight.computeIfPresent(key, (k, attached) -> {
+            snapshot.addAll(attached);
+            return attached;
+        });
+        return snapshot;
+    }
+
+    /**
+     * 结束任务，之后的相同请求将发起新任务
+     * @return 挂载在该任务上的全部导出记录
+     */
+    public List<KeyAssetExport> finish(String key) {
+        List<KeyAssetExport> attached = inFlight.remove(key);
+        return attached != null ? attached : Collections.emptyList();
+    }
+
+    /**
+     * 从在途任务上摘下一条导出记录，任务本身继续执行，结束时不再处理该记录
+     * @return 摘下的导出记录，不在该任务上时返回null
+     */
+    public KeyAssetExport detach(String key, Object taskId) {
+        KeyAssetExport[] detached = {null};
+        inFlight.computeIfPresent(key, (k, attached) -> {
+            Iterator<KeyAssetExport> iterator = attached.iterator();
+            while (iterator.hasNext()) {
+                KeyAssetExport keyAssetExport = iterator.next();
+                if (Objects.equals(keyAssetExport.getTaskId(), taskId)) {
+                    iterator.remove();
+                    detached[0] = keyAssetExport;
+                    break;
+                }
+            }
+            // 摘空后保留映射，直到执行中的任务结束
+            return attached;
+        });
+        return detached[0];
+    }
+
+    /**
+     * 查找导出记录所挂载的在途任务
+     * @return 任务键，不在任何在途任务上时返回null
+     */
+    public String findKey(Object taskId) {
+        for (Map.Entry<String, List<KeyAssetExport>> entry : inFlight.entrySet()) {
+            for (KeyAssetExport keyAssetExport : attached(entry.getKey())) {
+                if (Objects.equals(keyAssetExport.getTaskId(), taskId)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在途任务数
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
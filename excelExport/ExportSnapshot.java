@@ -0,0 +1,33 @@
+package com.qax.situation.asset.application.service.impl.excel.delta;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @description: 查询范围的导出快照，记录上次成功导出的水位及各单位内容指纹
+ */
+@Data
+public class ExportSnapshot {
+
+    /**
+     * 上次成功导出的任务ID
+     */
+    private String taskId;
+
+    /**
+     * 上次成功导出的文件ID
+     */
+    private String fileId;
+
+    /**
+     * 上次成功导出的完成时间（毫秒）
+     */
+    private long completedAt;
+
+    /**
+     * 单位键 -> 单位内容指纹
+     */
+    private Map<String, String> fingerprints = new LinkedHashMap<>();
+}
@@ -0,0 +1,84 @@
+package com.qax.situation.asset.application.service.impl.excel.delta;
+
+import cn.hutool.json.JSONUtil;
+import com.qax.situation.asset.application.dto.request.DataPreCheckQuery;
+import com.qax.situation.asset.application.service.impl.excel.cache.ExportSingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * @description: 导出快照存储，每个查询范围一个快照文件，作为增量导出的水位
+ * 快照只在导出成功并上传后保存，先写临时文件再原子替换，进程重启后仍可用
+ */
+@Slf4j
+@Component
+public class ExportSnapshotStore {
+
+    @Value("${key-asset.export.delta.enabled:true}")
+    private boolean enabled;
+
+    @Value("${key-asset.export.delta.snapshot-dir:${java.io.tmpdir}/key-asset-export-snapshot}")
+    private String snapshotDir;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查询范围键：规范化查询条件的哈希，与导出格式、导出模式无关
+     */
+    public String scopeKey(DataPreCheckQuery query) {
+        return ExportSingleFlight.normalizedHash(query);
+    }
+
+    /**
+     * 读取查询范围的快照
+     * @return 不存在或无法读取时返回null
+     */
+    public ExportSnapshot load(String scopeKey) {
+        if (!enabled) {
+            return null;
+        }
+        Path file = snapshotFile(scopeKey);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return JSONUtil.toBean(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), ExportSnapshot.class);
+        } catch (Exception e) {
+            log.warn("读取导出快照失败，按无快照处理：{}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 保存查询范围的快照，失败只记录日志，不影响本次导出结果
+     */
+    public void save(String scopeKey, ExportSnapshot snapshot) {
+        if (!enabled) {
+            return;
+        }
+        Path file = snapshotFile(scopeKey);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), scopeKey, ".tmp");
+            Files.write(temp, JSONUtil.toJsonStr(snapshot).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("导出快照已保存：{}，单位数：{}", file, snapshot.getFingerprints().size());
+        } catch (IOException e) {
+            log.warn("保存导出快照失败：{}", file, e);
+        }
+    }
+
+    private Path snapshotFile(String scopeKey) {
+        return Paths.get(snapshotDir, scopeKey + ".json");
+    }
+}
@@ -0,0 +1,328 @@
+package com.qax.situation.asset.application.service.impl.excel.spill;
+
+import cn.hutool.core.util.IdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.util.DefaultTempFileCreationStrategy;
+import org.apache.poi.util.TempFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * @description: 导出落盘目录管理，每个导出任务在配置目录下独占一个子目录，任务结束时异步删除；
+ * 目录总占用超过配额时新任务排队等待回收，超时后拒绝；后台定期回收超过宽限期仍未删除的孤儿目录
+ * （删除失败或节点崩溃残留），并按需将POI的SXSSF临时文件也放到该目录下统一计入配额；
+ * 导出检查点同样放在该目录下计入配额，超过检查点有效期未更新的检查点由后台回收
+ */
+@Slf4j
+@Component
+public class ExportSpillManager {
+
+    /**
+     * POI临时文件子目录
+     */
+    private static final String POI_TEMP_DIR = "poi";
+
+    /**
+     * 导出检查点子目录，每个任务一个子目录，由检查点存储管理
+     */
+    private static final String CHECKPOINT_DIR = "checkpoint";
+
+    @Value("${key-asset.export.spill.dir:${java.io.tmpdir}/key-asset-export-spill}")
+    private String spillDir;
+
+    /**
+     * 落盘目录配额，0表示不限制；只在任务开始时检查，执行中的任务不受限制
+     */
+    @Value("${key-asset.export.spill.quota-mb:10240}")
+    private long quotaMb;
+
+    /**
+     * 超出配额时的最长排队时间
+     */
+    @Value("${key-asset.export.spill.queue-timeout-ms:600000}")
+    private long queueTimeoutMs;
+
+    /**
+     * 非本节点在途任务的目录及POI临时文件超过该时长未修改视为孤儿，应大于单个导出的最长耗时
+     */
+    @Value("${key-asset.export.spill.orphan-grace-ms:7200000}")
+    private long orphanGraceMs;
+
+    /**
+     * 检查点有效期，与检查点存储共用配置，超过该时长未更新的检查点目录被回收
+     */
+    @Value("${key-asset.export.checkpoint.max-age-ms:86400000}")
+    private long checkpointMaxAgeMs;
+
+    @Value("${key-asset.export.spill.cleanup-interval-ms:300000}")
+    private long cleanupIntervalMs;
+
+    /**
+     * 是否将POI的SXSSF临时文件放到落盘目录下
+     */
+    @Value("${key-asset.export.spill.redirect-poi-temp:true}")
+    private boolean redirectPoiTemp;
+
+    private final Set<String> activeJobs = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition reclaimed = lock.newCondition();
+    private Path root;
+    private long quotaBytes;
+    private volatile long usedBytes;
+    private int waitingJobs;
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(spillDir).toAbsolutePath();
+        quotaBytes = quotaMb * 1024 * 1024;
+        Files.createDirectories(root);
+        Files.createDirectories(root.resolve(CHECKPOINT_DIR));
+        if (redirectPoiTemp) {
+            Path poiDir = Files.createDirectories(root.resolve(POI_TEMP_DIR));
+            TempFile.setTempFileCreationStrategy(new DefaultTempFileCreationStrategy(poiDir.toFile()));
+        }
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "key-asset-export-spill-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::reclaimOrphans, 0, cleanupIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("导出落盘目录：{}，配额：{}", root, quotaMb > 0 ? quotaMb + "MB" : "不限制");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * 为任务分配落盘目录，目录总占用超过配额时阻塞排队
+     * @param jobId 任务ID，仅用于目录命名，同一任务多次分配得到不同目录
+     * @throws RejectedExecutionException 排队超时
+     */
+    public JobSpill acquire(String jobId) throws InterruptedException, IOException {
+        if (quotaBytes > 0) {
+            awaitQuota();
+        }
+        String name = jobId.replaceAll("[\\\\/:*?\"<>|]", "_") + "-" + IdUtil.fastSimpleUUID();
+        activeJobs.add(name);
+        try {
+            return new JobSpill(name, Files.createDirectories(root.resolve(name)));
+        } catch (IOException e) {
+            activeJobs.remove(name);
+            throw e;
+        }
+    }
+
+    private void awaitQuota() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        lock.lock();
+        try {
+            waitingJobs++;
+            try {
+                while ((usedBytes = sizeOf(root)) >= quotaBytes) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new RejectedExecutionException("导出落盘目录超出配额，排队超时");
+                    }
+                    // 执行中的任务也可能释放空间，定期重新统计
+                    reclaimed.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(cleanupIntervalMs)));
+                }
+            } finally {
+                waitingJobs--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 检查点根目录，其下的数据计入配额
+     */
+    public Path getCheckpointRoot() {
+        return root.resolve(CHECKPOINT_DIR);
+    }
+
+    /**
+     * 回收孤儿目录、POI残留临时文件与过期检查点，并更新占用统计
+     */
+    private void reclaimOrphans() {
+        long cutoff = System.currentTimeMillis() - orphanGraceMs;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (POI_TEMP_DIR.equals(name)) {
+                    deleteOlderThan(entry, cutoff);
+                } else if (CHECKPOINT_DIR.equals(name)) {
+                    reclaimExpiredCheckpoints(entry);
+                } else if (!activeJobs.contains(name) && lastModified(entry) < cutoff) {
+                    log.info("回收孤儿落盘目录：{}", entry);
+                    deleteRecursively(entry);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("回收落盘目录失败：{}", root, e);
+        }
+        usedBytes = sizeOf(root);
+        signalReclaimed();
+    }
+
+    /**
+     * 回收超过有效期未更新的检查点目录：执行中的任务会持续刷新检查点，节点重启时未恢复的残留检查点由此回收
+     */
+    private void reclaimExpiredCheckpoints(Path checkpointRoot) throws IOException {
+        long cutoff = System.currentTimeMillis() - checkpointMaxAgeMs;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(checkpointRoot, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                if (lastModified(dir) < cutoff) {
+                    log.info("回收过期检查点目录：{}", dir);
+                    deleteRecursively(dir);
+                }
+            }
+        }
+    }
+
+    private void signalReclaimed() {
+        lock.lock();
+        try {
+            reclaimed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    /**
+     * 最近一次统计的目录占用
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public int getWaitingJobs() {
+        lock.lock();
+        try {
+            return waitingJobs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 任务独占的落盘目录，任务结束时关闭，目录异步删除
+     */
+    public class JobSpill implements AutoCloseable {
+
+        private final String name;
+        private final Path dir;
+        private boolean closed;
+
+        private JobSpill(String name, Path dir) {
+            this.name = name;
+            this.dir = dir;
+        }
+
+        /**
+         * 目录内的文件路径，目录已按任务隔离，文件名保持原样用于上传
+         * @param fileName 文件名（不含扩展名）
+         * @param extension 扩展名（含"."）
+         */
+        public Path resolve(String fileName, String extension) {
+            return dir.resolve(fileName + extension);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Runnable delete = () -> {
+                deleteRecursively(dir);
+                activeJobs.remove(name);
+                usedBytes = sizeOf(root);
+                signalReclaimed();
+            };
+            try {
+                cleaner.execute(delete);
+            } catch (RejectedExecutionException e) {
+                // 节点关闭中，直接删除
+                delete.run();
+            }
+        }
+    }
+
+    private static long lastModified(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.mapToLong(path -> {
+                try {
+                    return Files.getLastModifiedTime(path).toMillis();
+                } catch (IOException e) {
+                    return 0L;
+                }
+            }).max().orElse(0L);
+        }
+    }
+
+    private static void deleteOlderThan(Path dir, long cutoff) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    // 统计期间被删除
+                    return 0L;
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("统计落盘目录占用失败：{}", dir, e);
+            return 0L;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除落盘文件失败：{}", path, e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("删除落盘目录失败：{}", dir, e);
+        }
+    }
+}
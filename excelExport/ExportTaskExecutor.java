@@ -0,0 +1,205 @@
+package com.qax.situation.asset.application.service.impl.excel.executor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @description: 导出任务专用执行器，与应用默认的异步线程池隔离
+ * 按导出规模分为小任务与大任务两条通道，各自限制工作线程数与排队数，
+ * 避免省级大导出堵住小导出。通道工作线程要在本线程上渲染工作簿，与分片渲染线程一样始终使用平台线程；
+ * 以IO为主的分页拉取线程由 {@link #fetchThreadFactory(String)} 与 {@link #newFetchExecutor(String, int)} 创建，可选使用虚拟线程（JDK 21+）
+ */
+@Slf4j
+@Component
+public class ExportTaskExecutor {
+
+    /**
+     * 执行通道
+     */
+    public enum ExportLane {
+        SMALL, LARGE
+    }
+
+    @Value("${key-asset.export.executor.small.workers:4}")
+    private int smallWorkers;
+
+    @Value("${key-asset.export.executor.small.queue-capacity:50}")
+    private int smallQueueCapacity;
+
+    @Value("${key-asset.export.executor.large.workers:1}")
+    private int largeWorkers;
+
+    @Value("${key-asset.export.executor.large.queue-capacity:10}")
+    private int largeQueueCapacity;
+
+    /**
+     * 分页拉取线程是否使用虚拟线程
+     */
+    @Value("${key-asset.export.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${key-asset.export.executor.render-threads:0}")
+    private int renderThreads;
+
+    private final Map<ExportLane, ThreadPoolExecutor> lanes = new EnumMap<>(ExportLane.class);
+
+    /**
+     * 分片渲染线程池，CPU密集，默认与CPU核数相同
+     */
+    private ExecutorService renderExecutor;
+    private int renderPoolSize;
+    private boolean useVirtualThreads;
+    private final Map<ExportLane, AtomicLong> rejectedCounts = new EnumMap<>(ExportLane.class);
+
+    @PostConstruct
+    public void init() {
+        useVirtualThreads = virtualThreads && virtualThreadFactory("probe-") != null;
+        if (virtualThreads && !useVirtualThreads) {
+            log.warn("当前JDK不支持虚拟线程，分页拉取使用平台线程");
+        }
+        lanes.put(ExportLane.SMALL, createLane(ExportLane.SMALL, smallWorkers, smallQueueCapacity));
+        lanes.put(ExportLane.LARGE, createLane(ExportLane.LARGE, largeWorkers, largeQueueCapacity));
+        renderPoolSize = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        renderExecutor = Executors.newFixedThreadPool(renderPoolSize, platformThreadFactory("key-asset-export-render-"));
+        log.info("导出执行器初始化完成，小任务通道：{}线程/{}排队，大任务通道：{}线程/{}排队，拉取使用虚拟线程：{}",
+                smallWorkers, smallQueueCapacity, largeWorkers, largeQueueCapacity, useVirtualThreads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        lanes.values().forEach(ExecutorService::shutdownNow);
+        renderExecutor.shutdownNow();
+    }
+
+    /**
+     * 分片渲染线程池，渲染为CPU密集任务，始终使用平台线程
+     */
+    public ExecutorService getRenderExecutor() {
+        return renderExecutor;
+    }
+
+    /**
+     * 分片渲染并行度
+     */
+    public int getRenderThreads() {
+        return renderPoolSize;
+    }
+
+    /**
+     * 分页拉取线程工厂，开启且JDK支持时创建虚拟线程，否则创建守护平台线程
+     * @param prefix 线程名前缀
+     */
+    public ThreadFactory fetchThreadFactory(String prefix) {
+        return useVirtualThreads ? virtualThreadFactory(prefix) : platformThreadFactory(prefix);
+    }
+
+    /**
+     * 分页拉取执行器：开启且JDK支持虚拟线程时每个任务一个虚拟线程，线程数不设上限，由调用方限制并发；
+     * 否则为固定大小的守护平台线程池
+     * @param prefix 线程名前缀
+     * @param platformThreads 平台线程池大小
+     */
+    public ExecutorService newFetchExecutor(String prefix, int platformThreads) {
+        if (useVirtualThreads) {
+            ExecutorService executor = threadPerTaskExecutor(virtualThreadFactory(prefix));
+            if (executor != null) {
+                return executor;
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, platformThreads), platformThreadFactory(prefix));
+    }
+
+    /**
+     * 提交导出任务
+     * @throws RejectedExecutionException 通道排队已满
+     */
+    public void execute(ExportLane lane, Runnable task) {
+        lanes.get(lane).execute(task);
+    }
+
+    /**
+     * 通道当前排队任务数
+     */
+    public int getQueueDepth(ExportLane lane) {
+        return lanes.get(lane).getQueue().size();
+    }
+
+    /**
+     * 通道当前正在执行的任务数
+     */
+    public int getActiveCount(ExportLane lane) {
+        return lanes.get(lane).getActiveCount();
+    }
+
+    /**
+     * 通道累计拒绝的任务数
+     */
+    public long getRejectedCount(ExportLane lane) {
+        return rejectedCounts.get(lane).get();
+    }
+
+    private ThreadPoolExecutor createLane(ExportLane lane, int workers, int queueCapacity) {
+        ThreadFactory threadFactory = platformThreadFactory("key-asset-export-" + lane.name().toLowerCase() + "-");
+        AtomicLong rejectedCount = new AtomicLong();
+        rejectedCounts.put(lane, rejectedCount);
+        int poolSize = Math.max(1, workers);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory,
+                (task, pool) -> {
+                    long rejected = rejectedCount.incrementAndGet();
+                    log.warn("导出任务被拒绝，通道：{}，排队数：{}，累计拒绝：{}", lane, pool.getQueue().size(), rejected);
+                    throw new RejectedExecutionException("导出任务排队已满，通道：" + lane);
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory platformThreadFactory(String prefix) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 通过反射创建每个任务一个线程的执行器（Executors.newThreadPerTaskExecutor），JDK 21以下返回null
+     */
+    private static ExecutorService threadPerTaskExecutor(ThreadFactory threadFactory) {
+        if (threadFactory == null) {
+            return null;
+        }
+        try {
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 通过反射创建虚拟线程工厂（Thread.ofVirtual().name(prefix, 1).factory()），JDK 21以下返回null
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
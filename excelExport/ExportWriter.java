@@ -0,0 +1,39 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportJobMetrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * @description: 导出写出阶段，将单位组写出到目标文件
+ */
+@FunctionalInterface
+public interface ExportWriter {
+
+    /**
+     * 单个xlsx工作簿
+     */
+    ExportWriter XLSX = ComplexExcelExportUtil::exportTo;
+
+    /**
+     * 写出到文件
+     * @param fileName 文件名（不含扩展名）
+     * @param unitGroups 单位组迭代器
+     * @param target 目标文件
+     * @param options 导出选项
+     * @param metrics 任务指标
+     * @return 文件大小（字节）
+     */
+    long write(String fileName, Iterator<UnitGroupDto> unitGroups, Path target,
+               ExcelExportOptions options, ExportJobMetrics metrics) throws IOException;
+
+    /**
+     * 目标文件扩展名
+     */
+    default String fileExtension() {
+        return ".xlsx";
+    }
+}
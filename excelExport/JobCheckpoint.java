@@ -0,0 +1,227 @@
+package com.qax.situation.asset.application.service.impl.excel.checkpoint;
+
+import cn.hutool.core.lang.ParameterizedTypeImpl;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import com.qax.dayu.asset.sdk.model.PageResult;
+import com.qax.situation.asset.application.service.impl.excel.fetch.AssetPageFetcher;
+import com.qax.situation.asset.infra.persistence.db.entity.KeyAssetExport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * @description: 单个导出任务的检查点，拉取到的每一页先落盘再交给流水线，检查点文件按间隔刷新；
+ * 恢复时已落盘的分页直接从本地读取，只拉取缺失的分页；第1页总是重新拉取，总数或内容与落盘时不一致时
+ * 丢弃该数据流已落盘的分页从头拉取，避免数据增删后按页码补拉造成行重复或遗漏。
+ * 未启用检查点时所有方法均为空操作
+ */
+@Slf4j
+public class JobCheckpoint {
+
+    static final String CHECKPOINT_FILE = "checkpoint.json";
+
+    private final Path dir;
+    private final ExportCheckpoint state;
+    private final long flushIntervalMs;
+    private final Map<String, Set<Integer>> spooledPages = new ConcurrentHashMap<>();
+    private volatile long lastFlushMillis;
+
+    JobCheckpoint(Path dir, ExportCheckpoint state, long flushIntervalMs) {
+        this.dir = dir;
+        this.state = state;
+        this.flushIntervalMs = flushIntervalMs;
+        if (state != null) {
+            state.getSpooledPages().forEach((stream, pages) -> spooledPages(stream).addAll(pages));
+        }
+    }
+
+    /**
+     * 未启用检查点
+     */
+    static JobCheckpoint disabled() {
+        return new JobCheckpoint(null, null, 0);
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * 是否由上次中断的任务恢复而来
+     */
+    public boolean isResumed() {
+        return state != null && state.getResumeCount() > 0;
+    }
+
+    /**
+     * 包装分页查询：已落盘的分页从本地读取，其余分页拉取后先落盘；第1页拉取后先校验数据一致性标记
+     * @param stream 数据流名称，同一任务内唯一
+     * @param type 分页元素类型
+     */
+    public <T> AssetPageFetcher.PageQuery<T> spooling(String stream, AssetPageFetcher.PageQuery<T> query, Class<T> type) {
+        if (!isEnabled()) {
+            return query;
+        }
+        Type pageType = new ParameterizedTypeImpl(new Type[]{type}, null, PageResult.class);
+        return (pageNo, pageSize) -> {
+            Path pageFile = dir.resolve(stream + "-" + pageSize + "-" + pageNo + ".json");
+            if (pageNo != 1 && spooledPages(stream).contains(pageNo) && Files.exists(pageFile)) {
+                try {
+                    PageResult<T> page = JSONUtil.toBean(new String(Files.readAllBytes(pageFile), StandardCharsets.UTF_8), pageType, false);
+                    return ResponseEntity.ok(page);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("读取落盘分页失败，重新拉取：{}", pageFile, e);
+                }
+            }
+            ResponseEntity<PageResult<T>> response = query.fetch(pageNo, pageSize);
+            if (response != null && response.getBody() != null) {
+                if (pageNo == 1) {
+                    verifyMarker(stream, pageSize, response.getBody());
+                }
+                spool(stream, pageNo, pageFile, response.getBody());
+            }
+            return response;
+        };
+    }
+
+    /**
+     * 记录数据流的一致性标记；与落盘时的标记不一致（或落盘时未记录）时丢弃该数据流已落盘的分页。
+     * 数据流的其他分页在第1页之后才拉取，校验期间不会读取落盘分页
+     */
+    private void verifyMarker(String stream, int pageSize, PageResult<?> firstPage) {
+        String marker = firstPage.getTotal() + ":" + pageSize + ":" + SecureUtil.md5(JSONUtil.toJsonStr(firstPage.getItems()));
+        String previous;
+        synchronized (this) {
+            previous = state.getStreamMarkers().put(stream, marker);
+        }
+        Set<Integer> pages = spooledPages(stream);
+        if (marker.equals(previous) || pages.isEmpty()) {
+            return;
+        }
+        log.warn("{}数据在中断后已变化，丢弃已落盘的{}页从头拉取：{}", stream, pages.size(), dir);
+        pages.clear();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, stream + "-*.json")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            // 页码记录已清空，残留文件不会被读取
+            log.warn("删除落盘分页失败：{}", dir, e);
+        }
+        flush();
+    }
+
+    private void spool(String stream, int pageNo, Path pageFile, PageResult<?> page) {
+        try {
+            writeAtomically(pageFile, JSONUtil.toJsonStr(page));
+            spooledPages(stream).add(pageNo);
+            flushIfDue();
+        } catch (IOException e) {
+            // 落盘失败只影响恢复，不影响本次导出
+            log.warn("分页落盘失败：{}", pageFile, e);
+        }
+    }
+
+    /**
+     * 记录已写出的单位组
+     */
+    public void recordUnitWritten(String unitName) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            state.setUnitsWritten(state.getUnitsWritten() + 1);
+            state.setLastUnitName(unitName);
+        }
+        flushIfDue();
+    }
+
+    /**
+     * 写出从头重新执行时清零写出进度，已落盘的分页保留
+     */
+    public void restartWrite() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            state.setUnitsWritten(0);
+            state.setLastUnitName(null);
+        }
+    }
+
+    /**
+     * 更新挂载在任务上的导出记录，恢复时这些记录一起恢复
+     */
+    public void updateRecords(List<KeyAssetExport> records) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<String> json = new ArrayList<>(records.size());
+        records.forEach(record -> json.add(JSONUtil.toJsonStr(record)));
+        synchronized (this) {
+            state.setRecords(json);
+        }
+        flushIfDue();
+    }
+
+    private void flushIfDue() {
+        if (System.currentTimeMillis() - lastFlushMillis >= flushIntervalMs) {
+            flush();
+        }
+    }
+
+    /**
+     * 立即写出检查点文件
+     */
+    public synchronized void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<String, List<Integer>> pages = new TreeMap<>();
+        spooledPages.forEach((stream, pageNos) -> pages.put(stream, new ArrayList<>(pageNos)));
+        state.setSpooledPages(pages);
+        state.setUpdatedAt(System.currentTimeMillis());
+        try {
+            writeAtomically(dir.resolve(CHECKPOINT_FILE), JSONUtil.toJsonStr(state));
+            lastFlushMillis = state.getUpdatedAt();
+        } catch (IOException e) {
+            log.warn("检查点写出失败：{}", dir, e);
+        }
+    }
+
+    /**
+     * 检查点进度描述，用于日志
+     */
+    public String describe() {
+        if (!isEnabled()) {
+            return "未启用";
+        }
+        int pages = spooledPages.values().stream().mapToInt(Set::size).sum();
+        return "已落盘" + pages + "页，上次写到第" + state.getUnitsWritten() + "个单位（" + state.getLastUnitName() + "）";
+    }
+
+    Path getDir() {
+        return dir;
+    }
+
+    private Set<Integer> spooledPages(String stream) {
+        return spooledPages.computeIfAbsent(stream, s -> new ConcurrentSkipListSet<>());
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,99 @@
+package com.qax.situation.asset.application.service.impl.excel.benchmark;
+
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.util.ComplexExcelExportUtil;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @description: 合并策略并发压力测试
+ * N个线程同时完整导出，每个线程的单位数与每单位系统数不同，合并区域布局各不相同；
+ * 逐个读回工作簿，断言合并区域与单线程导出同一数据的结果完全一致且互不重叠，
+ * 用于验证合并记录只属于单次导出、不会在并发导出之间串用。通过 main 方法运行，失败时抛出AssertionError
+ */
+public class MergeStrategyConcurrencyStressTest {
+
+    private static final int STRING_CARDINALITY = 16;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // 单线程导出的合并区域作为期望值
+        List<List<String>> expected = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            expected.add(mergedRegions(export(i)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 1; round <= rounds; round++) {
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<byte[]>> futures = new ArrayList<>(threads);
+                for (int i = 0; i < threads; i++) {
+                    int index = i;
+                    futures.add(executor.submit(() -> {
+                        // 数据在线程内生成，导出过程中不与其他线程共享
+                        List<UnitGroupDto> groups = generate(index);
+                        start.await();
+                        return ComplexExcelExportUtil.exportComplexExcelToBytes("stress-" + index, groups);
+                    }));
+                }
+                for (int i = 0; i < threads; i++) {
+                    List<String> actual = mergedRegions(futures.get(i).get());
+                    if (!actual.equals(expected.get(i))) {
+                        throw new AssertionError("第" + round + "轮线程" + i + "合并区域与单线程导出不一致，期望"
+                                + expected.get(i).size() + "个，实际" + actual.size() + "个");
+                    }
+                }
+                System.out.printf("第%d轮通过，%d个线程%n", round, threads);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<UnitGroupDto> generate(int index) {
+        return new SyntheticUnitGroupGenerator(STRING_CARDINALITY, index).generate(50 + index * 7, 1 + index % 8);
+    }
+
+    private static byte[] export(int index) throws IOException {
+        return ComplexExcelExportUtil.exportComplexExcelToBytes("stress-" + index, generate(index));
+    }
+
+    /**
+     * 读回工作簿的合并区域，按sheet与区域排序，并断言同一sheet内的区域互不重叠
+     */
+    private static List<String> mergedRegions(byte[] bytes) throws IOException {
+        List<String> regions = new ArrayList<>();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
+            for (Sheet sheet : workbook) {
+                List<CellRangeAddress> sheetRegions = sheet.getMergedRegions();
+                if (sheetRegions.isEmpty()) {
+                    throw new AssertionError("sheet " + sheet.getSheetName() + " 没有合并区域");
+                }
+                sheetRegions.sort(Comparator.comparingInt(CellRangeAddress::getFirstRow)
+                        .thenComparingInt(CellRangeAddress::getFirstColumn));
+                for (int i = 0; i < sheetRegions.size(); i++) {
+                    CellRangeAddress region = sheetRegions.get(i);
+                    // 按起始行排序后，只有起始行不晚于当前区域末行的后续区域可能重叠
+                    for (int j = i + 1; j < sheetRegions.size()
+                            && sheetRegions.get(j).getFirstRow() <= region.getLastRow(); j++) {
+                        if (region.intersects(sheetRegions.get(j))) {
+                            throw new AssertionError("sheet " + sheet.getSheetName() + " 合并区域重叠："
+                                    + region.formatAsString() + "，" + sheetRegions.get(j).formatAsString());
+                        }
+                    }
+                    regions.add(sheet.getSheetName() + "!" + region.formatAsString());
+                }
+            }
+        }
+        return regions;
+    }
+}
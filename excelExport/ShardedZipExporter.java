@@ -0,0 +1,206 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+import com.qax.situation.asset.application.dto.excel.export.SystemInfoDto;
+import com.qax.situation.asset.application.dto.excel.export.UnitGroupDto;
+import com.qax.situation.asset.application.service.impl.excel.metrics.ExportJobMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @description: 分片并行导出，将单位组拆分为多个分片，每个分片在独立线程中渲染为一个工作簿，
+ * 渲染完成的分片按完成顺序从磁盘流式写入同一个ZIP，不在内存中缓冲整个分片
+ * <pre>
+ * UNIT_COUNT        每满 unitsPerShard 个单位提交一个分片，边接收单位组边渲染
+ * FIRST_LEVEL_UNIT  按一级隶属单位（取单位下首个系统的firstLevelUnit）分片，需收齐全部单位组后提交
+ * </pre>
+ * 各分片复用同一套行构建、合并与样式逻辑；同时在途（渲染中或已渲染未写入ZIP）的分片数不超过渲染并行度，
+ * 达到上限时先把已完成的分片写入ZIP再提交，避免上游快于渲染时单位组在内存中堆积
+ */
+@Slf4j
+public class ShardedZipExporter implements ExportWriter {
+
+    /**
+     * 分片方式
+     */
+    public enum ShardMode {
+        UNIT_COUNT, FIRST_LEVEL_UNIT
+    }
+
+    private static final String UNKNOWN_FIRST_LEVEL_UNIT = "未分类";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final ShardMode shardMode;
+    private final int unitsPerShard;
+    private final ExecutorService renderExecutor;
+    private final int maxInFlightShards;
+
+    /**
+     * @param shardMode 分片方式
+     * @param unitsPerShard UNIT_COUNT方式下每个分片的单位数
+     * @param renderExecutor 分片渲染线程池，线程数决定并行度
+     * @param maxInFlightShards 同时在途的分片数上限，一般取渲染线程数
+     */
+    public ShardedZipExporter(ShardMode shardMode, int unitsPerShard, ExecutorService renderExecutor, int maxInFlightShards) {
+        this.shardMode = shardMode;
+        this.unitsPerShard = Math.max(1, unitsPerShard);
+        this.renderExecutor = renderExecutor;
+        this.maxInFlightShards = Math.max(1, maxInFlightShards);
+    }
+
+    @Override
+    public String fileExtension() {
+        return ".zip";
+    }
+
+    @Override
+    public long write(String fileName, Iterator<UnitGroupDto> unitGroups, Path target,
+                      ExcelExportOptions options, ExportJobMetrics metrics) throws IOException {
+        if (!unitGroups.hasNext()) {
+            throw new IllegalArgumentException("导出数据不能为空");
+        }
+        Path shardDir = Files.createTempDirectory(target.toAbsolutePath().getParent(), fileName + "-shards");
+        CompletionService<Path> completionService = new ExecutorCompletionService<>(renderExecutor);
+        Semaphore inFlight = new Semaphore(maxInFlightShards);
+        List<Future<Path>> futures = new ArrayList<>();
+
+        try (ZipOutputStream zipOut = new ZipOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(target), COPY_BUFFER_SIZE))) {
+            // 分片内的xlsx已经是压缩格式，ZIP层不再重复压缩
+            zipOut.setLevel(Deflater.NO_COMPRESSION);
+            int written = 0;
+
+            if (shardMode == ShardMode.UNIT_COUNT) {
+                List<UnitGroupDto> shard = new ArrayList<>(unitsPerShard);
+                while (unitGroups.hasNext()) {
+                    shard.add(unitGroups.next());
+                    if (shard.size() >= unitsPerShard) {
+                        written += awaitPermit(inFlight, completionService, zipOut);
+                        futures.add(submit(completionService, shardDir, fileName, futures.size() + 1, null, shard, options, metrics));
+                        shard = new ArrayList<>(unitsPerShard);
+                    }
+                    // 边接收边把已完成的分片写入ZIP
+                    written += drainCompleted(inFlight, completionService, zipOut, false);
+                }
+                if (!shard.isEmpty()) {
+                    written += awaitPermit(inFlight, completionService, zipOut);
+                    futures.add(submit(completionService, shardDir, fileName, futures.size() + 1, null, shard, options, metrics));
+                }
+            } else {
+                Map<String, List<UnitGroupDto>> shards = new LinkedHashMap<>();
+                while (unitGroups.hasNext()) {
+                    UnitGroupDto group = unitGroups.next();
+                    shards.computeIfAbsent(firstLevelUnit(group), key -> new ArrayList<>()).add(group);
+                }
+                for (Map.Entry<String, List<UnitGroupDto>> entry : shards.entrySet()) {
+                    written += awaitPermit(inFlight, completionService, zipOut);
+                    futures.add(submit(completionService, shardDir, fileName, futures.size() + 1, entry.getKey(),
+                            entry.getValue(), options, metrics));
+                }
+            }
+
+            while (written < futures.size()) {
+                written += drainCompleted(inFlight, completionService, zipOut, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("分片导出被中断", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            deleteQuietly(shardDir);
+        }
+
+        long size = Files.size(target);
+        log.info("分片导出完成，文件：{}，分片数：{}，大小：{} 字节", target, futures.size(), size);
+        return size;
+    }
+
+    private Future<Path> submit(CompletionService<Path> completionService, Path shardDir, String fileName, int shardNo,
+                                String shardKey, List<UnitGroupDto> groups, ExcelExportOptions options,
+                                ExportJobMetrics metrics) {
+        String entryName = fileName + "_" + shardNo + (shardKey == null ? "" : "_" + sanitize(shardKey)) + ".xlsx";
+        Path shardFile = shardDir.resolve(entryName);
+        return completionService.submit(() -> {
+            ComplexExcelExportUtil.exportTo(entryName, groups.iterator(), shardFile, options, metrics);
+            return shardFile;
+        });
+    }
+
+    /**
+     * 取得一个在途分片许可，在途分片已达上限时等待分片完成并写入ZIP以释放许可；
+     * 写入ZIP与提交在同一线程，因此不能直接阻塞在许可上
+     * @return 等待期间写入的分片数
+     */
+    private static int awaitPermit(Semaphore inFlight, CompletionService<Path> completionService, ZipOutputStream zipOut)
+            throws IOException, InterruptedException {
+        int written = 0;
+        while (!inFlight.tryAcquire()) {
+            written += drainCompleted(inFlight, completionService, zipOut, true);
+        }
+        return written;
+    }
+
+    /**
+     * 将已渲染完成的分片写入ZIP，每写入一个分片释放一个在途许可
+     * @param block 是否等待至少一个分片完成
+     * @return 写入的分片数
+     */
+    private static int drainCompleted(Semaphore inFlight, CompletionService<Path> completionService,
+                                      ZipOutputStream zipOut, boolean block)
+            throws IOException, InterruptedException {
+        int written = 0;
+        Future<Path> done = block ? completionService.take() : completionService.poll();
+        while (done != null) {
+            Path shardFile = getShard(done);
+            zipOut.putNextEntry(new ZipEntry(shardFile.getFileName().toString()));
+            Files.copy(shardFile, zipOut);
+            zipOut.closeEntry();
+            Files.delete(shardFile);
+            inFlight.release();
+            written++;
+            done = completionService.poll();
+        }
+        return written;
+    }
+
+    private static Path getShard(Future<Path> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("分片导出失败：" + cause.getMessage(), cause);
+        }
+    }
+
+    private static String firstLevelUnit(UnitGroupDto group) {
+        List<SystemInfoDto> systems = group.getSystemList();
+        if (systems == null || systems.isEmpty() || systems.get(0).getFirstLevelUnit() == null
+                || systems.get(0).getFirstLevelUnit().isEmpty()) {
+            return UNKNOWN_FIRST_LEVEL_UNIT;
+        }
+        return systems.get(0).getFirstLevelUnit();
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[\\\\/:*?\"<>|\\s]", "_");
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            log.warn("清理分片临时目录失败：{}", dir, e);
+        }
+    }
+}
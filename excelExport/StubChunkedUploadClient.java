@@ -0,0 +1,110 @@
+package com.qax.situation.asset.application.service.impl.excel.upload;
+
+import cn.hutool.core.util.IdUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @description: 进程内的Hakkero分片上传桩，按上传ID在内存中保存已确认的分片，完成时拼接为文件；
+ * 可注入故障：分片上传前失败、分片已确认但响应丢失、查询已确认分片失败，用于验证续传
+ */
+public class StubChunkedUploadClient implements ChunkedUploadClient {
+
+    private final Map<String, TreeMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Set<Integer> failBeforeStore = new HashSet<>();
+    private final Set<Integer> failAfterStore = new HashSet<>();
+    private final Map<Integer, Integer> uploadCounts = new HashMap<>();
+    private int failAcknowledgedLookups;
+
+    /**
+     * 指定分片第一次上传时在服务端确认前失败
+     */
+    public StubChunkedUploadClient failBeforeStore(int chunkIndex) {
+        failBeforeStore.add(chunkIndex);
+        return this;
+    }
+
+    /**
+     * 指定分片第一次上传时服务端已确认但响应丢失
+     */
+    public StubChunkedUploadClient failAfterStore(int chunkIndex) {
+        failAfterStore.add(chunkIndex);
+        return this;
+    }
+
+    /**
+     * 之后的若干次已确认分片查询失败
+     */
+    public StubChunkedUploadClient failAcknowledgedLookups(int times) {
+        failAcknowledgedLookups = times;
+        return this;
+    }
+
+    @Override
+    public String initUpload(String fileName, long fileSize, int chunkSize, String bucket) {
+        String uploadId = IdUtil.fastSimpleUUID();
+        uploads.put(uploadId, new TreeMap<>());
+        return uploadId;
+    }
+
+    @Override
+    public synchronized int acknowledgedChunks(String uploadId) {
+        if (failAcknowledgedLookups > 0) {
+            failAcknowledgedLookups--;
+            throw new IllegalStateException("查询已确认分片失败");
+        }
+        TreeMap<Integer, byte[]> chunks = chunks(uploadId);
+        int acknowledged = 0;
+        while (chunks.containsKey(acknowledged)) {
+            acknowledged++;
+        }
+        return acknowledged;
+    }
+
+    @Override
+    public synchronized void uploadChunk(String uploadId, int chunkIndex, byte[] data, int length) {
+        uploadCounts.merge(chunkIndex, 1, Integer::sum);
+        if (failBeforeStore.remove(chunkIndex)) {
+            throw new IllegalStateException("分片" + chunkIndex + "上传失败");
+        }
+        chunks(uploadId).put(chunkIndex, Arrays.copyOf(data, length));
+        if (failAfterStore.remove(chunkIndex)) {
+            throw new IllegalStateException("分片" + chunkIndex + "响应丢失");
+        }
+    }
+
+    @Override
+    public synchronized String completeUpload(String uploadId) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        chunks(uploadId).values().forEach(chunk -> content.write(chunk, 0, chunk.length));
+        uploads.remove(uploadId);
+        String fileId = IdUtil.fastSimpleUUID();
+        files.put(fileId, content.toByteArray());
+        return fileId;
+    }
+
+    /**
+     * 已完成上传的文件内容
+     */
+    public byte[] getFile(String fileId) {
+        return files.get(fileId);
+    }
+
+    /**
+     * 指定分片被上传的次数
+     */
+    public synchronized int getUploadCount(int chunkIndex) {
+        return uploadCounts.getOrDefault(chunkIndex, 0);
+    }
+
+    private TreeMap<Integer, byte[]> chunks(String uploadId) {
+        TreeMap<Integer, byte[]> chunks = uploads.get(uploadId);
+        if (chunks == null) {
+            throw new IllegalArgumentException("上传ID不存在：" + uploadId);
+        }
+        return chunks;
+    }
+}
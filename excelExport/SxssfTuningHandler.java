@@ -0,0 +1,98 @@
+package com.qax.situation.asset.application.service.impl.excel.util;
+
+import com.alibaba.excel.write.handler.SheetWriteHandler;
+import com.alibaba.excel.write.handler.WorkbookWriteHandler;
+import com.alibaba.excel.write.metadata.holder.WriteSheetHolder;
+import com.alibaba.excel.write.metadata.holder.WriteWorkbookHolder;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * @description: 按导出选项调整SXSSF工作簿：临时文件压缩在工作簿创建后设置，行窗口在每个sheet创建后设置；
+ * 压缩级别与共享字符串表只能在构造时指定，需要时在工作簿创建后、写入任何sheet前替换为按选项构造的工作簿
+ */
+public class SxssfTuningHandler implements WorkbookWriteHandler, SheetWriteHandler {
+
+    private final ExcelExportOptions options;
+
+    public SxssfTuningHandler(ExcelExportOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * 选项与默认值一致时无需注册
+     */
+    public static boolean isNeeded(ExcelExportOptions options) {
+        return options.getRowAccessWindowSize() > 0 || options.isCompressTempFiles() || needsRebuild(options);
+    }
+
+    private static boolean needsRebuild(ExcelExportOptions options) {
+        return options.getDeflateLevel() != Deflater.DEFAULT_COMPRESSION || options.isUseSharedStrings();
+    }
+
+    @Override
+    public void beforeWorkbookCreate() {
+    }
+
+    @Override
+    public void afterWorkbookCreate(WriteWorkbookHolder writeWorkbookHolder) {
+        Workbook workbook = writeWorkbookHolder.getWorkbook();
+        if (!(workbook instanceof SXSSFWorkbook)) {
+            return;
+        }
+        if (needsRebuild(options)) {
+            // 新工作簿沿用EasyExcel创建的XSSFWorkbook，此时尚无sheet，原SXSSF工作簿没有临时文件需要清理
+            XSSFWorkbook base = ((SXSSFWorkbook) workbook).getXSSFWorkbook();
+            int window = options.getRowAccessWindowSize() > 0 ? options.getRowAccessWindowSize() : SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+            writeWorkbookHolder.setWorkbook(new LeveledSXSSFWorkbook(base, window, options.isCompressTempFiles(),
+                    options.isUseSharedStrings(), options.getDeflateLevel()));
+        } else if (options.isCompressTempFiles()) {
+            ((SXSSFWorkbook) workbook).setCompressTempFiles(true);
+        }
+    }
+
+    @Override
+    public void afterWorkbookDispose(WriteWorkbookHolder writeWorkbookHolder) {
+    }
+
+    @Override
+    public void beforeSheetCreate(WriteWorkbookHolder writeWorkbookHolder, WriteSheetHolder writeSheetHolder) {
+    }
+
+    @Override
+    public void afterSheetCreate(WriteWorkbookHolder writeWorkbookHolder, WriteSheetHolder writeSheetHolder) {
+        Sheet sheet = writeSheetHolder.getSheet();
+        if (options.getRowAccessWindowSize() > 0 && sheet instanceof SXSSFSheet) {
+            ((SXSSFSheet) sheet).setRandomAccessWindowSize(options.getRowAccessWindowSize());
+        }
+    }
+
+    /**
+     * 按指定压缩级别写出zip的SXSSF工作簿
+     */
+    private static class LeveledSXSSFWorkbook extends SXSSFWorkbook {
+
+        private final int deflateLevel;
+
+        LeveledSXSSFWorkbook(XSSFWorkbook workbook, int rowAccessWindowSize, boolean compressTmpFiles,
+                             boolean useSharedStringsTable, int deflateLevel) {
+            super(workbook, rowAccessWindowSize, compressTmpFiles, useSharedStringsTable);
+            this.deflateLevel = deflateLevel;
+        }
+
+        @Override
+        protected ZipArchiveOutputStream createArchiveOutputStream(OutputStream out) throws IOException {
+            ZipArchiveOutputStream zos = super.createArchiveOutputStream(out);
+            zos.setLevel(deflateLevel);
+            return zos;
+        }
+    }
+}
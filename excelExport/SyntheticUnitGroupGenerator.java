@@ -0,0 +1,122 @@
+package com.qax.situation.asset.application.service.impl.excel.benchmark;
+
+import com.qax.situation.asset.application.dto.excel.export.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @description: 基准测试用的合成单位组数据，填充单位、部门、工作人员与系统信息的全部导出字段
+ * 字符串取值在 stringCardinality 个不同值之间循环，用于模拟低/高基数列对共享字符串表的影响
+ */
+public class SyntheticUnitGroupGenerator {
+
+    private final int stringCardinality;
+    private final Random random;
+
+    /**
+     * @param stringCardinality 每个字符串字段的不同取值个数
+     * @param seed 随机种子，保证多次运行数据一致
+     */
+    public SyntheticUnitGroupGenerator(int stringCardinality, long seed) {
+        this.stringCardinality = Math.max(1, stringCardinality);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 生成单位组
+     * @param unitCount 单位数
+     * @param systemsPerUnit 每个单位的系统数
+     */
+    public List<UnitGroupDto> generate(int unitCount, int systemsPerUnit) {
+        List<UnitGroupDto> groups = new ArrayList<>(unitCount);
+        for (int i = 0; i < unitCount; i++) {
+            groups.add(generateGroup(i, systemsPerUnit));
+        }
+        return groups;
+    }
+
+    private UnitGroupDto generateGroup(int unitIndex, int systemsPerUnit) {
+        UnitGroupDto group = new UnitGroupDto();
+
+        UnitInfoDto unitInfo = new UnitInfoDto();
+        unitInfo.setUnitName("测试单位" + unitIndex);
+        unitInfo.setHasSupervisionDuty(flag());
+        unitInfo.setFirstResponsiblePerson(value("负责人"));
+        unitInfo.setFirstResponsiblePosition(value("职务"));
+        unitInfo.setDirectResponsiblePerson(value("直接责任人"));
+        unitInfo.setDirectResponsiblePosition(value("职务"));
+        group.setUnitInfo(unitInfo);
+
+        DepartmentDto dept = new DepartmentDto();
+        dept.setDepartmentName(value("处室"));
+        dept.setSecurityStaffCount(random.nextInt(20));
+        dept.setDepartmentHeadName(value("处室负责人"));
+        dept.setDepartmentHeadPosition(value("职务"));
+        dept.setOfficePhone(value("010-"));
+        dept.setMobilePhone(value("138"));
+        group.setDepartment(dept);
+
+        StaffDto staff = new StaffDto();
+        staff.setStaffName(value("工作人员"));
+        staff.setStaffPosition(value("职务"));
+        staff.setStaffOfficePhone(value("010-"));
+        staff.setStaffMobilePhone(value("139"));
+        group.setStaff(staff);
+
+        List<SystemInfoDto> systemList = new ArrayList<>(systemsPerUnit);
+        for (int j = 0; j < systemsPerUnit; j++) {
+            systemList.add(generateSystem());
+        }
+        group.setSystemList(systemList);
+        return group;
+    }
+
+    private SystemInfoDto generateSystem() {
+        SystemInfoDto system = new SystemInfoDto();
+        system.setSystemName(value("测试系统"));
+        system.setFirstLevelUnit(value("一级单位"));
+        system.setSecondLevelUnit(value("二级单位"));
+        system.setSystemResponsiblePerson(value("系统负责人"));
+        system.setSystemResponsiblePhone(value("1380000"));
+        system.setSystemResponsibleEmail(value("test") + "@example.com");
+        system.setOnlineTime("2023-01-01");
+        system.setIndustryType(value("行业"));
+        system.setSystemType(value("系统类型"));
+        system.setIcpRecordNumber(value("京ICP备"));
+        system.setSecurityLevel("三级");
+        system.setDomain(value("test") + ".gov.cn");
+        system.setSystemUrl("https://" + value("test") + ".gov.cn");
+        system.setIpAddress("192.168." + random.nextInt(Math.min(256, stringCardinality)) + ".1");
+        system.setPort("80");
+        system.setIsOnCloud(flag());
+        system.setCloudProvider(value("云服务商"));
+        system.setIsConnectedToInternet(flag());
+        system.setIsPublicService(flag());
+        system.setServiceTarget(value("服务对象"));
+        system.setUserScale(value("用户规模"));
+        system.setMaintenanceUnit(value("运维公司"));
+        system.setResponsibilityDivision(value("责任划分"));
+        system.setMaintenanceContact(value("联系人"));
+        system.setDataRecordCount(value("条数"));
+        system.setDataSizeGB(value("GB"));
+        system.setDataStorageLocation(value("存储位置"));
+        system.setIsCriticalInfrastructure(flag());
+        system.setIsGovernmentWebsite(flag());
+        system.setIsLargePlatform(flag());
+        system.setCoverOver30Percent(flag());
+        system.setCoverOver100k(flag());
+        system.setStoreOver1mSensitiveInfo(flag());
+        system.setStoreOver1mBasicData(flag());
+        return system;
+    }
+
+    private String value(String prefix) {
+        return prefix + random.nextInt(stringCardinality);
+    }
+
+    private String flag() {
+        return random.nextBoolean() ? "是" : "否";
+    }
+}
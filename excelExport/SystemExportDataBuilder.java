@@ -1,9 +1,16 @@
 package com.qax.situation.asset.application.service.impl.excel.builder;
 
 import com.qax.situation.asset.application.dto.excel.export.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 /**
  * @author L-wangxinzhuo
@@ -14,210 +21,320 @@ import java.util.List;
 public class SystemExportDataBuilder {
 
     /**
-     * 构建复杂的Excel数据
+     * 列数，对应A-AI列
+     */
+    public static final int COLUMN_COUNT = 35;
+
+    /**
+     * 系统清单列，顺序即表头顺序
+     */
+    private static final List<Column<SystemInfoDto>> SYSTEM_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            new Column<>("序号", SystemInfoDto::getSerialNumber),
+            new Column<>("网络应用系统名称", SystemInfoDto::getSystemName),
+            new Column<>("一级隶属单位", SystemInfoDto::getFirstLevelUnit),
+            new Column<>("二级隶属单位", SystemInfoDto::getSecondLevelUnit),
+            new Column<>("系统负责人姓名", SystemInfoDto::getSystemResponsiblePerson),
+            new Column<>("系统负责人联系电话", SystemInfoDto::getSystemResponsiblePhone),
+            new Column<>("系统负责人邮箱", SystemInfoDto::getSystemResponsibleEmail),
+            new Column<>("上线时间", SystemInfoDto::getOnlineTime),
+            new Column<>("行业类型", SystemInfoDto::getIndustryType),
+            new Column<>("系统类型", SystemInfoDto::getSystemType),
+            new Column<>("ICP备案号", SystemInfoDto::getIcpRecordNumber),
+            new Column<>("等保级别", SystemInfoDto::getSecurityLevel),
+            new Column<>("域名", SystemInfoDto::getDomain),
+            new Column<>("系统使用URL", SystemInfoDto::getSystemUrl),
+            new Column<>("IP地址", SystemInfoDto::getIpAddress),
+            new Column<>("端口", SystemInfoDto::getPort),
+            new Column<>("是否上云", SystemInfoDto::getIsOnCloud),
+            new Column<>("云服务商名称", SystemInfoDto::getCloudProvider),
+            new Column<>("是否连接互联网", SystemInfoDto::getIsConnectedToInternet),
+            new Column<>("是否面向公众服务", SystemInfoDto::getIsPublicService),
+            new Column<>("服务对象", SystemInfoDto::getServiceTarget),
+            new Column<>("用户规模", SystemInfoDto::getUserScale),
+            new Column<>("运维单位名称", SystemInfoDto::getMaintenanceUnit),
+            new Column<>("工作责任划分", SystemInfoDto::getResponsibilityDivision),
+            new Column<>("运维单位联系人信息", SystemInfoDto::getMaintenanceContact),
+            new Column<>("各类数据规模条数", SystemInfoDto::getDataRecordCount),
+            new Column<>("各类数据规模大小(GB)", SystemInfoDto::getDataSizeGB),
+            new Column<>("各类数据存储位置", SystemInfoDto::getDataStorageLocation),
+            new Column<>("是否为关键信息基础设施", SystemInfoDto::getIsCriticalInfrastructure),
+            new Column<>("是否为党政机关门户网站", SystemInfoDto::getIsGovernmentWebsite),
+            new Column<>("是否为大型网络平台", SystemInfoDto::getIsLargePlatform),
+            new Column<>("覆盖30%以上人口", SystemInfoDto::getCoverOver30Percent),
+            new Column<>("覆盖10万人以上", SystemInfoDto::getCoverOver100k),
+            new Column<>("存储超过100万人敏感信息", SystemInfoDto::getStoreOver1mSensitiveInfo),
+            new Column<>("存储超过100万条基础数据", SystemInfoDto::getStoreOver1mBasicData)
+    ));
+
+    /**
+     * 标题块：标题行合并整行
+     */
+    private static final BlockLayout<Void> TITLE_BLOCK = BlockLayout.<Void>builder(COLUMN_COUNT)
+            .row().label(0, COLUMN_COUNT - 1, "重点保护对象清单")
+            .build();
+
+    /**
+     * 单位信息块：单位信息行、责任处室行、工作人员行
+     */
+    private static final BlockLayout<UnitGroupDto> UNIT_BLOCK = BlockLayout.<UnitGroupDto>builder(COLUMN_COUNT)
+            .row()
+            .label(0, 1, "单位名称")
+            .value(2, 6, "单位名称", g -> g.getUnitInfo().getUnitName())
+            .label(7, 8, "是否具有行业主管监管职责")
+            .value(9, 12, "是否具有行业主管监管职责", g -> g.getUnitInfo().getHasSupervisionDuty())
+            .label(13, 14, "第一责任人姓名")
+            .value(15, 16, "第一责任人姓名", g -> g.getUnitInfo().getFirstResponsiblePerson())
+            .label(17, 17, "职务")
+            .value(18, 24, "第一责任人职务", g -> g.getUnitInfo().getFirstResponsiblePosition())
+            .label(25, 28, "直接责任人姓名")
+            .value(29, 30, "直接责任人姓名", g -> g.getUnitInfo().getDirectResponsiblePerson())
+            .label(31, 31, "职务")
+            .value(32, 34, "直接责任人职务", g -> g.getUnitInfo().getDirectResponsiblePosition())
+            .row()
+            .label(0, 1, 2, "责任处室名称")
+            .value(2, 6, 2, "责任处室名称", g -> g.getDepartment().getDepartmentName())
+            .label(7, 8, 2, "专职从事网络安全工作人员数量")
+            .value(9, 12, 2, "专职从事网络安全工作人员数量", g -> g.getDepartment().getSecurityStaffCount())
+            .label(13, 14, "处室负责人姓名")
+            .value(15, 16, "处室负责人姓名", g -> g.getDepartment().getDepartmentHeadName())
+            .label(17, 17, "职务")
+            .value(18, 24, "处室负责人职务", g -> g.getDepartment().getDepartmentHeadPosition())
+            .label(25, 28, "办公电话")
+            .value(29, 30, "处室办公电话", g -> g.getDepartment().getOfficePhone())
+            .label(31, 31, "手机")
+            .value(32, 34, "处室手机", g -> g.getDepartment().getMobilePhone())
+            .row()
+            .label(13, 14, "工作人员")
+            .value(15, 16, "工作人员", g -> g.getStaff().getStaffName())
+            .label(17, 17, "职务")
+            .value(18, 24, "工作人员职务", g -> g.getStaff().getStaffPosition())
+            .label(25, 28, "办公电话")
+            .value(29, 30, "工作人员办公电话", g -> g.getStaff().getStaffOfficePhone())
+            .label(31, 31, "手机")
+            .value(32, 34, "工作人员手机", g -> g.getStaff().getStaffMobilePhone())
+            .build();
+
+    /**
+     * 系统表头行，各单位组共享同一个不可变行
+     */
+    private static final List<Object> SYSTEM_HEADER_ROW = buildSystemHeaderRow();
+
+    /**
+     * 构建复杂的Excel数据（一次性物化全部行，仅适用于小数据量）
      */
     public static List<List<Object>> buildComplexData(List<UnitGroupDto> unitGroups) {
         List<List<Object>> allData = new ArrayList<>();
-
-        // 1. 添加标题行
-        List<Object> titleRow = new ArrayList<>();
-        titleRow.add("重点保护对象清单");
-        // 填充34个空单元格
-        for (int i = 1; i < 35; i++) {
-            titleRow.add("");
+        Iterator<List<Object>> rows = rowIterator(unitGroups);
+        while (rows.hasNext()) {
+            allData.add(rows.next());
         }
-        allData.add(titleRow);
+        return allData;
+    }
+
+    /**
+     * 按需逐行生成Excel数据，遍历单位组时才构建对应的行，避免整表驻留内存
+     */
+    public static Iterator<List<Object>> rowIterator(List<UnitGroupDto> unitGroups) {
+        return new UnitGroupRowIterator(unitGroups.iterator(), null);
+    }
+
+    /**
+     * 按需逐行生成Excel数据，并在生成各块首行时回调行布局监听器（如合并策略），
+     * 使监听器与数据共用同一个行游标
+     */
+    public static Iterator<List<Object>> rowIterator(List<UnitGroupDto> unitGroups, RowLayoutListener layoutListener) {
+        return new UnitGroupRowIterator(unitGroups.iterator(), layoutListener);
+    }
+
+    /**
+     * 按需逐行生成Excel数据，单位组由迭代器逐个提供（如上游流水线的队列），无需预先知道总数
+     */
+    public static Iterator<List<Object>> rowIterator(Iterator<UnitGroupDto> unitGroups, RowLayoutListener layoutListener) {
+        return new UnitGroupRowIterator(unitGroups, layoutListener);
+    }
+
+    /**
+     * 行布局监听器，行索引从0开始，与sheet中的行号一致
+     */
+    public interface RowLayoutListener {
+
+        /**
+         * 生成标题行时回调
+         */
+        void onTitleRow(int rowIndex);
+
+        /**
+         * 生成单位组的单位信息行（该组首行）时回调
+         */
+        void onUnitGroupStart(UnitGroupDto group, int firstRowIndex);
+
+        /**
+         * 全部行生成完毕时回调
+         */
+        void onLayoutComplete(int totalRows);
+    }
 
-        // 2. 遍历每个单位组
-        for (UnitGroupDto group : unitGroups) {
-            // 2.1 单位信息行
-            List<Object> unitRow = buildUnitInfoRow(group.getUnitInfo());
-            allData.add(unitRow);
+    /**
+     * 单位组占用的行数：单位信息行、责任处室行、工作人员行、表头行及系统数据行（不含分隔空行）
+     */
+    public static int groupRowCount(UnitGroupDto group) {
+        return UNIT_BLOCK.getRowCount() + 1 + (group.getSystemList() != null ? group.getSystemList().size() : 0);
+    }
+
+    /**
+     * 行迭代器：标题行 -> (单位信息块各行、表头行、系统数据行、空行) * N
+     */
+    private static class UnitGroupRowIterator implements Iterator<List<Object>> {
 
-            // 2.2 责任处室行
-            List<Object> deptRow = buildDepartmentRow(group.getDepartment());
-            allData.add(deptRow);
+        private static final int STAGE_TITLE = 0;
+        private static final int STAGE_UNIT = 1;
+        private static final int STAGE_BLOCK = 2;
+        private static final int STAGE_HEADER = 3;
+        private static final int STAGE_SYSTEM = 4;
+        private static final int STAGE_BLANK = 5;
+        private static final int STAGE_END = 6;
 
-            // 2.3 工作人员行
-            List<Object> staffRow = buildStaffRow(group.getStaff());
-            allData.add(staffRow);
+        private final Iterator<UnitGroupDto> unitGroups;
+        private final RowLayoutListener layoutListener;
+        private int stage = STAGE_TITLE;
+        private int rowIndex = 0;
+        private UnitGroupDto group;
+        private int blockRow;
+        private Iterator<SystemInfoDto> systems;
+        private int serial;
 
+        UnitGroupRowIterator(Iterator<UnitGroupDto> unitGroups, RowLayoutListener layoutListener) {
+            this.unitGroups = unitGroups;
+            this.layoutListener = layoutListener;
+        }
 
-            // 2.4 表头行
-            List<Object> headerRow = buildSystemHeaderRow();
-            allData.add(headerRow);
+        @Override
+        public boolean hasNext() {
+            return stage != STAGE_END;
+        }
 
-            // 2.5 系统数据行
-            int serial = 1;
-            for (SystemInfoDto system : group.getSystemList()) {
-                system.setSerialNumber(serial++);
-                List<Object> systemRow = buildSystemDataRow(system);
-                allData.add(systemRow);
+        @Override
+        public List<Object> next() {
+            List<Object> row = nextRow();
+            rowIndex++;
+            if (stage == STAGE_END && layoutListener != null) {
+                layoutListener.onLayoutComplete(rowIndex);
             }
+            return row;
+        }
 
-            // 2.6 添加空行分隔（如果不是最后一组）
-            if (unitGroups.indexOf(group) < unitGroups.size() - 1) {
-                allData.add(new ArrayList<>());
+        private List<Object> nextRow() {
+            switch (stage) {
+                case STAGE_TITLE:
+                    if (layoutListener != null) {
+                        layoutListener.onTitleRow(rowIndex);
+                    }
+                    nextGroup();
+                    return TITLE_BLOCK.renderRow(0, null);
+                case STAGE_UNIT:
+                    if (layoutListener != null) {
+                        layoutListener.onUnitGroupStart(group, rowIndex);
+                    }
+                    blockRow = 0;
+                    return nextBlockRow();
+                case STAGE_BLOCK:
+                    return nextBlockRow();
+                case STAGE_HEADER:
+                    List<SystemInfoDto> systemList = group.getSystemList();
+                    systems = systemList != null ? systemList.iterator() : Collections.emptyIterator();
+                    serial = 1;
+                    afterSystemRow();
+                    return SYSTEM_HEADER_ROW;
+                case STAGE_SYSTEM:
+                    SystemInfoDto system = systems.next();
+                    system.setSerialNumber(serial++);
+                    afterSystemRow();
+                    return buildSystemDataRow(system);
+                case STAGE_BLANK:
+                    // 空行分隔（最后一组之后不添加）
+                    nextGroup();
+                    return Collections.emptyList();
+                default:
+                    throw new NoSuchElementException();
             }
         }
 
-        return allData;
+        private List<Object> nextBlockRow() {
+            List<Object> row = UNIT_BLOCK.renderRow(blockRow++, group);
+            stage = blockRow < UNIT_BLOCK.getRowCount() ? STAGE_BLOCK : STAGE_HEADER;
+            return row;
+        }
+
+        private void afterSystemRow() {
+            if (systems.hasNext()) {
+                stage = STAGE_SYSTEM;
+            } else {
+                stage = unitGroups.hasNext() ? STAGE_BLANK : STAGE_END;
+            }
+        }
+
+        private void nextGroup() {
+            if (unitGroups.hasNext()) {
+                group = unitGroups.next();
+                stage = STAGE_UNIT;
+            } else {
+                group = null;
+                stage = STAGE_END;
+            }
+        }
     }
 
-    private static List<Object> buildUnitInfoRow(UnitInfoDto unitInfo) {
-        List<Object> row = new ArrayList<>();
-        row.add("单位名称");
-        row.add("");
-        row.add(unitInfo.getUnitName());
-        for (int i = 3; i < 7; i++) row.add("");
-        row.add("是否具有行业主管监管职责");
-        row.add("");
-        row.add(unitInfo.getHasSupervisionDuty());
-        for (int i = 10; i < 13; i++) row.add("");
-        row.add("第一责任人姓名");
-        row.add("");
-        row.add(unitInfo.getFirstResponsiblePerson());
-        for (int i = 16; i < 17; i++) row.add("");
-        row.add("职务");
-        row.add(unitInfo.getFirstResponsiblePosition());
-        for (int i = 19; i < 25; i++) row.add("");
-        row.add("直接责任人姓名");
-        for (int i = 26; i < 29; i++) row.add("");
-        row.add(unitInfo.getDirectResponsiblePerson());
-        row.add("");
-        row.add("职务");
-        row.add(unitInfo.getDirectResponsiblePosition());
-        row.add("");
-        row.add("");
-        return row;
+    private static List<Object> buildSystemHeaderRow() {
+        Object[] row = new Object[SYSTEM_COLUMNS.size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = SYSTEM_COLUMNS.get(i).getHeader();
+        }
+        return Collections.unmodifiableList(Arrays.asList(row));
     }
 
-    private static List<Object> buildDepartmentRow(DepartmentDto dept) {
-        List<Object> row = new ArrayList<>();
-        row.add("责任处室名称");
-        row.add("");
-        row.add(dept.getDepartmentName());
-        for (int i = 3; i < 7; i++) row.add("");
-        row.add("专职从事网络安全工作人员数量");
-        row.add("");
-        row.add(dept.getSecurityStaffCount());
-        for (int i = 10; i < 13; i++) row.add("");
-        row.add("处室负责人姓名");
-        row.add("");
-        row.add(dept.getDepartmentHeadName());
-        for (int i = 16; i < 17; i++) row.add("");
-        row.add("职务");
-        row.add(dept.getDepartmentHeadPosition());
-        for (int i = 19; i < 25; i++) row.add("");
-        row.add("办公电话");
-        for (int i = 26; i < 29; i++) row.add("");
-        row.add(dept.getOfficePhone());
-        row.add("");
-        row.add("手机");
-        row.add(dept.getMobilePhone());
-        row.add("");
-        row.add("");
-        return row;
+    private static List<Object> buildSystemDataRow(SystemInfoDto system) {
+        Object[] row = new Object[SYSTEM_COLUMNS.size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = SYSTEM_COLUMNS.get(i).getExtractor().apply(system);
+        }
+        return Arrays.asList(row);
     }
 
-    private static List<Object> buildStaffRow(StaffDto staff) {
-        List<Object> row = new ArrayList<>();
-        for (int i = 0; i < 13; i++) row.add("");
-        row.add("工作人员");
-        row.add("");
-        row.add(staff.getStaffName());
-        for (int i = 16; i < 17; i++) row.add("");
-        row.add("职务");
-        row.add(staff.getStaffPosition());
-        for (int i = 19; i < 25; i++) row.add("");
-        row.add("办公电话");
-        for (int i = 26; i < 29; i++) row.add("");
-        row.add(staff.getStaffOfficePhone());
-        row.add("");
-        row.add("手机");
-        row.add(staff.getStaffMobilePhone());
-        row.add("");
-        row.add("");
-        return row;
+    /**
+     * 系统清单列定义，xlsx与csv导出共用
+     */
+    public static List<Column<SystemInfoDto>> systemColumns() {
+        return SYSTEM_COLUMNS;
     }
 
-    private static List<Object> buildSystemHeaderRow() {
-        List<Object> row = new ArrayList<>();
-        row.add("序号");
-        row.add("网络应用系统名称");
-        row.add("一级隶属单位");
-        row.add("二级隶属单位");
-        row.add("系统负责人姓名");
-        row.add("系统负责人联系电话");
-        row.add("系统负责人邮箱");
-        row.add("上线时间");
-        row.add("行业类型");
-        row.add("系统类型");
-        row.add("ICP备案号");
-        row.add("等保级别");
-        row.add("域名");
-        row.add("系统使用URL");
-        row.add("IP地址");
-        row.add("端口");
-        row.add("是否上云");
-        row.add("云服务商名称");
-        row.add("是否连接互联网");
-        row.add("是否面向公众服务");
-        row.add("服务对象");
-        row.add("用户规模");
-        row.add("运维单位名称");
-        row.add("工作责任划分");
-        row.add("运维单位联系人信息");
-        row.add("各类数据规模条数");
-        row.add("各类数据规模大小(GB)");
-        row.add("各类数据存储位置");
-        row.add("是否为关键信息基础设施");
-        row.add("是否为党政机关门户网站");
-        row.add("是否为大型网络平台");
-        row.add("覆盖30%以上人口");
-        row.add("覆盖10万人以上");
-        row.add("存储超过100万人敏感信息");
-        row.add("存储超过100万条基础数据");
-        return row;
+    /**
+     * 单位、责任处室、工作人员字段定义，用于扁平化导出时展开到每一行系统数据前
+     */
+    public static List<Column<UnitGroupDto>> unitColumns() {
+        return UNIT_BLOCK.getValueColumns();
     }
 
-    private static List<Object> buildSystemDataRow(SystemInfoDto system) {
-        List<Object> row = new ArrayList<>();
-        row.add(system.getSerialNumber());
-        row.add(system.getSystemName());
-        row.add(system.getFirstLevelUnit());
-        row.add(system.getSecondLevelUnit());
-        row.add(system.getSystemResponsiblePerson());
-        row.add(system.getSystemResponsiblePhone());
-        row.add(system.getSystemResponsibleEmail());
-        row.add(system.getOnlineTime());
-        row.add(system.getIndustryType());
-        row.add(system.getSystemType());
-        row.add(system.getIcpRecordNumber());
-        row.add(system.getSecurityLevel());
-        row.add(system.getDomain());
-        row.add(system.getSystemUrl());
-        row.add(system.getIpAddress());
-        row.add(system.getPort());
-        row.add(system.getIsOnCloud());
-        row.add(system.getCloudProvider());
-        row.add(system.getIsConnectedToInternet());
-        row.add(system.getIsPublicService());
-        row.add(system.getServiceTarget());
-        row.add(system.getUserScale());
-        row.add(system.getMaintenanceUnit());
-        row.add(system.getResponsibilityDivision());
-        row.add(system.getMaintenanceContact());
-        row.add(system.getDataRecordCount());
-        row.add(system.getDataSizeGB());
-        row.add(system.getDataStorageLocation());
-        row.add(system.getIsCriticalInfrastructure());
-        row.add(system.getIsGovernmentWebsite());
-        row.add(system.getIsLargePlatform());
-        row.add(system.getCoverOver30Percent());
-        row.add(system.getCoverOver100k());
-        row.add(system.getStoreOver1mSensitiveInfo());
-        row.add(system.getStoreOver1mBasicData());
-        return row;
+    /**
+     * 标题块布局，合并区域与标题行出自同一定义
+     */
+    public static BlockLayout<Void> titleBlockLayout() {
+        return TITLE_BLOCK;
+    }
+
+    /**
+     * 单位信息块布局，合并区域与单位信息块各行出自同一定义
+     */
+    public static BlockLayout<UnitGroupDto> unitBlockLayout() {
+        return UNIT_BLOCK;
+    }
+
+    /**
+     * 列定义：表头及取值方式
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Column<T> {
+        private final String header;
+        private final Function<T, Object> extractor;
     }
-}
\ No newline at end of file
+}